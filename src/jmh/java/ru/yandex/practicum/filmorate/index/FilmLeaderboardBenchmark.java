@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmLikesDAO;
+import ru.yandex.practicum.filmorate.perf.DatasetGenerator;
+import ru.yandex.practicum.filmorate.perf.DatasetSpec;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение получения популярных фильмов из рейтинга в памяти и SQL запросом по films.likes_count
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilmLeaderboardBenchmark {
+    private static final int FILMS = 1000;
+    private static final int TOP = 10;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int likes;
+
+    private EmbeddedDatabase database;
+    private DbFilmLikesDAO likesDAO;
+    private FilmLeaderboard leaderboard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .setScriptEncoding("UTF-8")
+                .addScripts("schema.sql", "data.sql")
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        likesDAO = new DbFilmLikesDAO(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(database)));
+
+        // Пользователей в 10 раз меньше, чем лайков, друзья не нужны
+        DatasetSpec spec = new DatasetSpec();
+        spec.setFilms(FILMS);
+        spec.setUsers(Math.max(likes / 10, 1));
+        spec.setLikes(likes);
+        spec.setFriendsPerUser(0);
+        new DatasetGenerator(jdbcTemplate).generate(spec);
+
+        leaderboard = new FilmLeaderboard(likesDAO);
+        leaderboard.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<Long> sqlTopFilms() {
+        return likesDAO.getTopFilms(TOP);
+    }
+
+    @Benchmark
+    public List<Long> leaderboardTopFilms() {
+        return leaderboard.getTopFilms(TOP);
+    }
+
+    @Benchmark
+    public int leaderboardLikeAndUnlike() {
+        long filmId = ThreadLocalRandom.current().nextInt(FILMS) + 1;
+        leaderboard.addLike(filmId);
+        leaderboard.removeLike(filmId);
+        return leaderboard.getLikes(filmId);
+    }
+}
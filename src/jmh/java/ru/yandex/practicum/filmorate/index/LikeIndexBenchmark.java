@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmLikesDAO;
+import ru.yandex.practicum.filmorate.perf.DatasetGenerator;
+import ru.yandex.practicum.filmorate.perf.DatasetSpec;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение проверок и выборок лайков по индексу IdBitmap в памяти и SQL запросами к film_likes.
+ * Размер индекса печатается при подготовке данных
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LikeIndexBenchmark {
+    private static final int FILMS = 10_000;
+
+    @Param({"100000", "1000000", "10000000"})
+    private int likes;
+
+    private EmbeddedDatabase database;
+    private DbFilmLikesDAO likesDAO;
+    private LikeIndex likeIndex;
+    private int users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .setScriptEncoding("UTF-8")
+                .addScripts("schema.sql", "data.sql")
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        likesDAO = new DbFilmLikesDAO(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(database)));
+
+        // Пользователей в 10 раз меньше, чем лайков, друзья не нужны
+        users = Math.max(likes / 10, 1);
+        DatasetSpec spec = new DatasetSpec();
+        spec.setFilms(FILMS);
+        spec.setUsers(users);
+        spec.setLikes(likes);
+        spec.setFriendsPerUser(0);
+        new DatasetGenerator(jdbcTemplate).generate(spec);
+
+        likeIndex = new LikeIndex(likesDAO);
+        likeIndex.load();
+        System.out.printf("%nЛайков: %d, размер индекса: %.1f МБ, %.1f байт на лайк%n", likes,
+                likeIndex.getSizeInBytes() / 1024.0 / 1024, (double) likeIndex.getSizeInBytes() / likes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public boolean sqlLikeExist() {
+        return likesDAO.likeExist(randomFilm(), randomUser());
+    }
+
+    @Benchmark
+    public boolean indexHasLiked() {
+        return likeIndex.getFilmLikes(randomFilm()).contains((int) randomUser());
+    }
+
+    @Benchmark
+    public List<Long> sqlFilmLikes() {
+        return likesDAO.getFilmLikes(randomFilm());
+    }
+
+    @Benchmark
+    public List<Long> indexFilmLikes() {
+        return likeIndex.getFilmLikes(randomFilm()).toIdList();
+    }
+
+    // Число пользователей, лайкнувших оба фильма
+    @Benchmark
+    public int indexCommonLikes() {
+        return likeIndex.getFilmLikes(randomFilm()).andCardinality(likeIndex.getFilmLikes(randomFilm()));
+    }
+
+    @Benchmark
+    public int indexLikeAndUnlike() {
+        long filmId = randomFilm();
+        long userId = randomUser();
+        likeIndex.addLike(filmId, userId);
+        likeIndex.removeLike(filmId, userId);
+        return likeIndex.getFilmLikes(filmId).cardinality();
+    }
+
+    private long randomFilm() {
+        return ThreadLocalRandom.current().nextInt(FILMS) + 1;
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Друзья пользователя в ConcurrentHashMap<Long, Boolean> с поиском общих друзей через List.contains
+ * против FriendSet с пересечением слиянием. Память на пользователя печатается при подготовке данных.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="FriendSetBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FriendSetBenchmark {
+    // Друзей всех пользователей при замере памяти, чтобы прирост кучи был заметнее погрешности сборки мусора
+    private static final int FRIENDS_FOR_HEAP = 1_000_000;
+    private static final int MIN_USERS_FOR_HEAP = 100;
+
+    @Param({"100", "1000", "10000"})
+    private int friends;
+
+    private Map<Long, Boolean> firstMap;
+    private Map<Long, Boolean> secondMap;
+    private FriendSet firstSet;
+    private FriendSet secondSet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        // Друзья двух пользователей из общего пула id, примерно половина друзей общие
+        firstMap = randomMap(random);
+        secondMap = randomMap(random);
+        firstSet = FriendSet.of(firstMap);
+        secondSet = FriendSet.of(secondMap);
+
+        Random heapRandom = new Random(42);
+        int users = Math.max(MIN_USERS_FOR_HEAP, FRIENDS_FOR_HEAP / friends);
+        long mapBytes = heapPerUser(users, i -> randomMap(heapRandom));
+        long setBytes = heapPerUser(users, i -> FriendSet.of(randomMap(heapRandom)));
+        System.out.printf("%nДрузей: %d, на пользователя: Map %d Б, FriendSet %d Б (оценка %d Б)%n", friends,
+                mapBytes, setBytes, firstSet.sizeInBytes());
+    }
+
+    @Benchmark
+    public List<Long> mapMutualFriends() {
+        List<Long> userFriends = new ArrayList<>(firstMap.keySet());
+        List<Long> friendFriends = new ArrayList<>(secondMap.keySet());
+        return userFriends.stream()
+                .filter(friendFriends::contains)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public long[] setMutualFriends() {
+        return firstSet.intersect(secondSet);
+    }
+
+    @Benchmark
+    public List<Long> setFriendsId() {
+        return firstSet.toIdList();
+    }
+
+    private Map<Long, Boolean> randomMap(Random random) {
+        Map<Long, Boolean> map = new ConcurrentHashMap<>();
+        while (map.size() < friends) {
+            map.putIfAbsent((long) random.nextInt(friends * 2) + 1, random.nextBoolean());
+        }
+        return map;
+    }
+
+    // Прирост занятой кучи после создания users множеств друзей, деленный на их число
+    private static long heapPerUser(int users, IntFunction<Object> factory) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+
+        List<Object> retained = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            retained.add(factory.apply(i));
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+
+        return retained.isEmpty() ? 0 : (after - before) / retained.size();
+    }
+}
@@ -0,0 +1,328 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Заполнение users, user_friends, films, film_genre и film_likes пакетными INSERT через JDBC.
+ * Id задаются явно, начиная со следующего после максимального в таблице, затем счетчики IDENTITY сдвигаются
+ * за вставленные id, поэтому приложение может работать с базой после генерации.
+ * Каждая таблица заполняется своим генератором случайных чисел от seed: при одинаковом DatasetSpec
+ * получаются одинаковые данные, а изменение параметров друзей не меняет лайки и наоборот.
+ * Запуск для ручного профилирования:
+ * mvn -Pjmh test-compile exec:exec@generate-dataset -Ddataset.args="url=jdbc:h2:file:/tmp/perf users=1000000 likes=10000000"
+ */
+@Slf4j
+public class DatasetGenerator {
+    private static final LocalDate MIN_BIRTHDAY = LocalDate.of(1950, 1, 1);
+    private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1950, 1, 1);
+    private static final int BIRTHDAY_DAYS = 20_000;
+    private static final int RELEASE_DATE_DAYS = 26_000;
+    private static final int MPA_RATINGS = 5;
+    private static final int MAX_FILM_GENRES = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public DatasetGenerator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+    }
+
+    public Dataset generate(DatasetSpec spec) {
+        long start = System.nanoTime();
+        long firstUser = nextId("users", "user_id");
+        long firstFilm = nextId("films", "film_id");
+
+        insertUsers(spec, firstUser);
+        long friendships = insertFriends(spec, firstUser);
+        int[] filmLikes = likesPerFilm(spec);
+        insertFilms(spec, firstFilm, filmLikes);
+        long likes = insertLikes(spec, firstFilm, firstUser, filmLikes);
+
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN user_id RESTART WITH " + (firstUser + spec.getUsers()));
+        jdbcTemplate.execute("ALTER TABLE films ALTER COLUMN film_id RESTART WITH " + (firstFilm + spec.getFilms()));
+
+        Dataset dataset = new Dataset(firstUser, firstFilm, spec.getUsers(), spec.getFilms(), friendships, likes);
+        log.info("Сгенерировано пользователей: {}, фильмов: {}, дружб: {}, лайков: {} за {} мс", dataset.getUsers(),
+                dataset.getFilms(), friendships, likes, (System.nanoTime() - start) / 1_000_000);
+        return dataset;
+    }
+
+    private void insertUsers(DatasetSpec spec, long firstUser) {
+        SplittableRandom random = new SplittableRandom(spec.getSeed());
+        Batch batch = new Batch("INSERT INTO users (user_id, login, name, email, birthday) VALUES (?, ?, ?, ?, ?)",
+                spec.getBatchSize());
+        for (long id = firstUser; id < firstUser + spec.getUsers(); id++) {
+            batch.add(id, "user" + id, "User " + id, "user" + id + "@mail.ru",
+                    Date.valueOf(MIN_BIRTHDAY.plusDays(random.nextInt(BIRTHDAY_DAYS))));
+        }
+        batch.flush();
+    }
+
+    // Граф Уоттса-Строгаца. Дружба взаимная и подтвержденная, поэтому каждое ребро - две строки user_friends
+    private long insertFriends(DatasetSpec spec, long firstUser) {
+        SplittableRandom random = new SplittableRandom(spec.getSeed() + 1);
+        int users = spec.getUsers();
+        int neighbours = Math.min(spec.getFriendsPerUser() / 2, (users - 1) / 2);
+
+        List<Set<Integer>> graph = new ArrayList<>(users);
+        for (int user = 0; user < users; user++) {
+            graph.add(new HashSet<>());
+        }
+        for (int user = 0; user < users; user++) {
+            for (int offset = 1; offset <= neighbours; offset++) {
+                int friend = (user + offset) % users;
+                if (random.nextDouble() < spec.getRewireProbability()) {
+                    friend = randomFriend(user, graph.get(user), users, random);
+                }
+                if (friend >= 0 && graph.get(user).add(friend)) {
+                    graph.get(friend).add(user);
+                }
+            }
+        }
+
+        Batch batch = new Batch("INSERT INTO user_friends (user_id, friend_id, status) VALUES (?, ?, true)",
+                spec.getBatchSize());
+        for (int user = 0; user < users; user++) {
+            for (int friend : graph.get(user)) {
+                batch.add(firstUser + user, firstUser + friend);
+            }
+        }
+        return batch.flush();
+    }
+
+    // Число лайков каждого фильма. Популярность распределена по фильмам в случайном порядке, а не по id
+    private int[] likesPerFilm(DatasetSpec spec) {
+        SplittableRandom random = new SplittableRandom(spec.getSeed() + 2);
+        int films = spec.getFilms();
+
+        double weights = 0;
+        for (int rank = 1; rank <= films; rank++) {
+            weights += Math.pow(rank, -spec.getLikeSkew());
+        }
+
+        int[] ranks = new int[films];
+        for (int i = 0; i < films; i++) {
+            ranks[i] = i + 1;
+        }
+        for (int i = films - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int rank = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = rank;
+        }
+
+        int[] likes = new int[films];
+        for (int film = 0; film < films; film++) {
+            double share = Math.pow(ranks[film], -spec.getLikeSkew()) / weights;
+            likes[film] = (int) Math.min(spec.getUsers(), Math.round(spec.getLikes() * share));
+        }
+        return likes;
+    }
+
+    private void insertFilms(DatasetSpec spec, long firstFilm, int[] filmLikes) {
+        SplittableRandom random = new SplittableRandom(spec.getSeed() + 3);
+        Batch films = new Batch("INSERT INTO films (film_id, name, description, rating, release_date, duration, " +
+                "likes_count) VALUES (?, ?, ?, ?, ?, ?, ?)", spec.getBatchSize());
+        for (int film = 0; film < spec.getFilms(); film++) {
+            long id = firstFilm + film;
+            films.add(id, "Film " + id, "Описание фильма " + id, 1 + random.nextInt(MPA_RATINGS),
+                    Date.valueOf(MIN_RELEASE_DATE.plusDays(random.nextInt(RELEASE_DATE_DAYS))),
+                    60 + random.nextInt(120), filmLikes[film]);
+        }
+        films.flush();
+
+        List<Integer> genres = jdbcTemplate.queryForList("SELECT genre_id FROM genre ORDER BY genre_id", Integer.class);
+        if (genres.isEmpty()) {
+            return;
+        }
+
+        Batch filmGenres = new Batch("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", spec.getBatchSize());
+        for (int film = 0; film < spec.getFilms(); film++) {
+            Set<Integer> filmGenreIds = new HashSet<>();
+            int count = 1 + random.nextInt(MAX_FILM_GENRES);
+            for (int i = 0; i < count; i++) {
+                filmGenreIds.add(genres.get(random.nextInt(genres.size())));
+            }
+            for (int genreId : filmGenreIds) {
+                filmGenres.add(firstFilm + film, genreId);
+            }
+        }
+        filmGenres.flush();
+    }
+
+    // Пользователи каждого фильма - случайная выборка без повторов (алгоритм Флойда)
+    private long insertLikes(DatasetSpec spec, long firstFilm, long firstUser, int[] filmLikes) {
+        SplittableRandom random = new SplittableRandom(spec.getSeed() + 4);
+        int users = spec.getUsers();
+
+        Batch batch = new Batch("INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)", spec.getBatchSize());
+        for (int film = 0; film < filmLikes.length; film++) {
+            Set<Integer> likedBy = new HashSet<>();
+            for (int j = users - filmLikes[film]; j < users; j++) {
+                int user = random.nextInt(j + 1);
+                likedBy.add(likedBy.contains(user) ? j : user);
+            }
+            // Строки по возрастанию первичного ключа
+            for (int user : likedBy.stream().mapToInt(Integer::intValue).sorted().toArray()) {
+                batch.add(firstFilm + film, firstUser + user);
+            }
+        }
+        return batch.flush();
+    }
+
+    private long nextId(String table, String column) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(" + column + ") FROM " + table, Long.class);
+        return max == null ? 1 : max + 1;
+    }
+
+    private static int randomFriend(int user, Set<Integer> friends, int users, SplittableRandom random) {
+        if (friends.size() >= users - 1) {
+            return -1;
+        }
+        while (true) {
+            int candidate = random.nextInt(users);
+            if (candidate != user && !friends.contains(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Параметры: url, username, password и поля DatasetSpec в виде name=value, например users=100000 likes=10000000.
+     * Если в базе нет таблиц, создаются схема и справочники из schema.sql и data.sql
+     */
+    public static void main(String[] args) {
+        DatasetSpec spec = new DatasetSpec();
+        String url = "jdbc:h2:file:./db/filmorate";
+        String username = "sa";
+        String password = "password";
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Ожидается параметр вида name=value: " + arg);
+            }
+            String value = option[1];
+            switch (option[0]) {
+                case "url":
+                    url = value;
+                    break;
+                case "username":
+                    username = value;
+                    break;
+                case "password":
+                    password = value;
+                    break;
+                case "users":
+                    spec.setUsers(Integer.parseInt(value));
+                    break;
+                case "films":
+                    spec.setFilms(Integer.parseInt(value));
+                    break;
+                case "likes":
+                    spec.setLikes(Long.parseLong(value));
+                    break;
+                case "likeSkew":
+                    spec.setLikeSkew(Double.parseDouble(value));
+                    break;
+                case "friendsPerUser":
+                    spec.setFriendsPerUser(Integer.parseInt(value));
+                    break;
+                case "rewireProbability":
+                    spec.setRewireProbability(Double.parseDouble(value));
+                    break;
+                case "seed":
+                    spec.setSeed(Long.parseLong(value));
+                    break;
+                case "batchSize":
+                    spec.setBatchSize(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + option[0]);
+            }
+        }
+
+        // Одно соединение на всю генерацию: файловая H2 закрывается, когда закрыто последнее соединение
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url, username, password, true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            initSchema(jdbcTemplate, dataSource);
+            System.out.println(new DatasetGenerator(jdbcTemplate).generate(spec));
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static void initSchema(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(dataSource);
+
+        Integer genres = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM genre", Integer.class);
+        if (genres == null || genres == 0) {
+            ResourceDatabasePopulator data = new ResourceDatabasePopulator(new ClassPathResource("data.sql"));
+            data.setSqlScriptEncoding("UTF-8");
+            data.execute(dataSource);
+        }
+    }
+
+    // Накопление строк и отправка пакетами по size строк. Каждый пакет - одна транзакция,
+    // в режиме autocommit H2 фиксирует каждую строку пакета отдельно
+    private class Batch {
+        private final String sql;
+        private final int size;
+        private final List<Object[]> rows;
+        private long total;
+
+        Batch(String sql, int size) {
+            this.sql = sql;
+            this.size = size;
+            this.rows = new ArrayList<>(size);
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+            if (rows.size() >= size) {
+                flush();
+            }
+        }
+
+        long flush() {
+            if (!rows.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, rows));
+                total += rows.size();
+                rows.clear();
+            }
+            return total;
+        }
+    }
+
+    @Data
+    public static class Dataset {
+        private final long firstUserId;
+        private final long firstFilmId;
+        private final int users;
+        private final int films;
+        private final long friendships;
+        private final long likes;
+    }
+}
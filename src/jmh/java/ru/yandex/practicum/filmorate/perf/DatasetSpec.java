@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import lombok.Data;
+
+/**
+ * Размеры и распределения синтетического набора данных.
+ * likes - желаемое число лайков. Фильм ранга r получает долю лайков, пропорциональную 1 / r^likeSkew,
+ * но не больше числа пользователей, поэтому фактическое число лайков может быть меньше.
+ * Граф друзей - Уоттс-Строгац: кольцо, где каждый дружит с friendsPerUser ближайшими,
+ * каждое ребро с вероятностью rewireProbability ведет к случайному пользователю
+ */
+@Data
+public class DatasetSpec {
+    private int users = 10_000;
+    private int films = 1_000;
+    private long likes = 100_000;
+    private double likeSkew = 0.8;
+    private int friendsPerUser = 10;
+    private double rewireProbability = 0.1;
+    private long seed = 42;
+    private int batchSize = 10_000;
+}
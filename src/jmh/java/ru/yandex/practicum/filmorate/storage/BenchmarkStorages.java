@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmGenreDAO;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmLikesDAO;
+import ru.yandex.practicum.filmorate.dao.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.film.GenreDAO;
+import ru.yandex.practicum.filmorate.dao.film.RatingMpaDAO;
+import ru.yandex.practicum.filmorate.dao.user.FriendsDAO;
+import ru.yandex.practicum.filmorate.dao.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendRecommender;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.perf.DatasetGenerator;
+import ru.yandex.practicum.filmorate.perf.DatasetSpec;
+import ru.yandex.practicum.filmorate.service.DbFilmService;
+import ru.yandex.practicum.filmorate.service.DbUserService;
+import ru.yandex.practicum.filmorate.service.DefaultFilmService;
+import ru.yandex.practicum.filmorate.service.DefaultUserService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+
+/**
+ * Хранилища и сервисы одной реализации для бенчмарков: в памяти или в H2 в памяти, собранные без Spring.
+ * Соединения с H2 берутся из пула Hikari, как в приложении.
+ * Данные создает DatasetGenerator: лайки распределены по степенному закону, граф друзей - Уоттс-Строгац
+ */
+public class BenchmarkStorages {
+    static final int FRIENDS = 20;
+    static final int LIKES_PER_FILM = 20;
+
+    final FilmStorage filmStorage;
+    final UserStorage userStorage;
+    final FilmService filmService;
+    final UserService userService;
+
+    private final EmbeddedDatabase database;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final DbFilmLikesDAO likesDAO;
+    private final FilmLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final FilmSimilarityIndex similarityIndex;
+    private final FriendGraph friendGraph;
+
+    private BenchmarkStorages(Backend backend) {
+        if (backend == Backend.MEMORY) {
+            database = null;
+            dataSource = null;
+            jdbcTemplate = null;
+            likesDAO = null;
+            leaderboard = null;
+            likeIndex = null;
+            similarityIndex = null;
+            friendGraph = null;
+            filmStorage = new InMemoryFilmStorage();
+            userStorage = new InMemoryUserStorage();
+            filmService = new DefaultFilmService(filmStorage, userStorage);
+            userService = new DefaultUserService(userStorage);
+            return;
+        }
+
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .setScriptEncoding("UTF-8")
+                .addScripts("schema.sql", "data.sql")
+                .build();
+        dataSource = new HikariDataSource();
+        dataSource.setDataSource(database);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        GenreDAO genreDAO = new GenreDAO(jdbcTemplate);
+        genreDAO.refresh();
+        RatingMpaDAO ratingMpaDAO = new RatingMpaDAO(jdbcTemplate);
+        ratingMpaDAO.refresh();
+        likesDAO = new DbFilmLikesDAO(jdbcTemplate, transactionTemplate);
+        leaderboard = new FilmLeaderboard(likesDAO);
+        likeIndex = new LikeIndex(likesDAO);
+        similarityIndex = new FilmSimilarityIndex(likeIndex, 50, 1000, 500, 0);
+        FriendsDAO friendsDAO = new FriendsDAO(jdbcTemplate, namedJdbcTemplate);
+        friendGraph = new FriendGraph(friendsDAO);
+
+        filmStorage = new FilmDbStorage(jdbcTemplate, namedJdbcTemplate, transactionTemplate,
+                new DbFilmGenreDAO(jdbcTemplate, namedJdbcTemplate, genreDAO), ratingMpaDAO, genreDAO,
+                leaderboard, likeIndex, 500);
+        userStorage = new UserDbStorage(jdbcTemplate, namedJdbcTemplate, friendsDAO, 500);
+        filmService = new DbFilmService(filmStorage, userStorage, likesDAO, leaderboard, likeIndex,
+                similarityIndex);
+        userService = new DbUserService(userStorage, friendsDAO, friendGraph,
+                new FriendRecommender(friendGraph, 200, 200, 500, 100, 10_000));
+    }
+
+    // Набор данных генерируется в H2. Для хранилищ в памяти он генерируется во временную H2 и копируется,
+    // поэтому обе реализации работают с одинаковыми данными
+    static BenchmarkStorages create(Backend backend, DatasetSpec spec) {
+        BenchmarkStorages storages = new BenchmarkStorages(backend);
+        if (backend == Backend.H2) {
+            new DatasetGenerator(storages.jdbcTemplate).generate(spec);
+            storages.leaderboard.load();
+            storages.likeIndex.load();
+            storages.similarityIndex.load();
+            ((FilmDbStorage) storages.filmStorage).loadIndexes();
+            storages.friendGraph.load();
+            return storages;
+        }
+
+        BenchmarkStorages source = create(Backend.H2, spec);
+        try {
+            storages.copyFrom(source);
+        } finally {
+            source.close();
+        }
+        return storages;
+    }
+
+    // Набор данных бенчмарков хранилищ: size пользователей и фильмов, в среднем LIKES_PER_FILM лайков на фильм
+    static DatasetSpec spec(int size) {
+        DatasetSpec spec = new DatasetSpec();
+        spec.setUsers(size);
+        spec.setFilms(size);
+        spec.setLikes((long) size * LIKES_PER_FILM);
+        spec.setFriendsPerUser(FRIENDS);
+        return spec;
+    }
+
+    void close() {
+        if (database != null) {
+            similarityIndex.close();
+            dataSource.close();
+            database.shutdown();
+        }
+    }
+
+    // id в хранилищах в памяти выдаются по порядку, пользователи и фильмы копируются в порядке id,
+    // поэтому id совпадают с исходными
+    private void copyFrom(BenchmarkStorages source) {
+        for (User user : source.userStorage.getAllUsers()) {
+            long id = user.getId();
+            user.setId(0);
+            userStorage.createUser(user);
+            checkId(id, user.getId());
+        }
+
+        for (Film film : source.filmStorage.getFilms()) {
+            Film copy = new Film(film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration());
+            copy.setMpa(film.getMpa());
+            copy.setGenres(film.getGenres());
+            filmStorage.saveFilm(copy);
+            checkId(film.getId(), copy.getId());
+        }
+
+        source.jdbcTemplate.query("SELECT film_id, user_id FROM film_likes", rs -> {
+            filmStorage.getFilm(rs.getLong("film_id")).orElseThrow().addLike(rs.getLong("user_id"));
+        });
+    }
+
+    private static void checkId(long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException("id при копировании не совпал: " + expected + " и " + actual);
+        }
+    }
+
+    public enum Backend {
+        MEMORY,
+        H2
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Основные операции с фильмами для хранилища в памяти и FilmDbStorage на H2.
+ * Лайк ставит и снимает отдельный пользователь без лайков, поэтому операция всегда успешна
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FilmStorageBenchmark {
+    private static final int TOP = 10;
+
+    @Param({"MEMORY", "H2"})
+    private BenchmarkStorages.Backend backend;
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private BenchmarkStorages storages;
+    private long likingUser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storages = BenchmarkStorages.create(backend, BenchmarkStorages.spec(size));
+        likingUser = storages.userStorage.createUser(new User("liker@mail.ru", "liker", "liker",
+                LocalDate.of(1990, 1, 1))).orElseThrow().getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storages.close();
+    }
+
+    @Benchmark
+    public Optional<Film> getFilm() {
+        return storages.filmStorage.getFilm(randomFilm());
+    }
+
+    @Benchmark
+    public List<Film> getFilms() {
+        return storages.filmStorage.getFilms();
+    }
+
+    @Benchmark
+    public List<Film> getTopFilms() {
+        return storages.filmStorage.getTopFilms(TOP);
+    }
+
+    // В наборе данных у каждого фильма название "Film <id>": слово film есть у всех фильмов,
+    // начало id совпадает по префиксу с id нескольких фильмов
+    @Benchmark
+    public List<Film> searchFilms() {
+        return storages.filmStorage.searchFilms("film " + randomFilm() / 10, TOP);
+    }
+
+    // Два жанра, диапазон в десять лет и сортировка по популярности
+    @Benchmark
+    public FilmCatalog filterFilms() {
+        FilmFilter filter = new FilmFilter();
+        int genre = 1 + ThreadLocalRandom.current().nextInt(5);
+        int yearFrom = 1950 + ThreadLocalRandom.current().nextInt(60);
+        filter.setGenres(Set.of(genre, genre + 1));
+        filter.setYearFrom(yearFrom);
+        filter.setYearTo(yearFrom + 9);
+        filter.setPopular(true);
+        return storages.filmStorage.filterFilms(filter, TOP);
+    }
+
+    // В памяти сходство считается по всем фильмам на запрос, в H2 читается из матрицы похожих фильмов
+    @Benchmark
+    public List<Film> getRecommendedFilms() {
+        return storages.filmService.getRecommendedFilms(randomUser(), TOP);
+    }
+
+    @Benchmark
+    public boolean likeAndUnlike() {
+        long filmId = randomFilm();
+        storages.filmService.addLikeToFilm(filmId, likingUser);
+        return storages.filmService.removeLikeFromFilm(filmId, likingUser);
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextInt(1, size + 1);
+    }
+
+    private long randomFilm() {
+        return ThreadLocalRandom.current().nextInt(1, size + 1);
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Получение пользователя, его друзей и общих друзей для хранилища в памяти и UserDbStorage на H2.
+ * Граф друзей - Уоттс-Строгац, соседние по id пользователи чаще всего друзья и имеют общих друзей
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserStorageBenchmark {
+    @Param({"MEMORY", "H2"})
+    private BenchmarkStorages.Backend backend;
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private BenchmarkStorages storages;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storages = BenchmarkStorages.create(backend, BenchmarkStorages.spec(size));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storages.close();
+    }
+
+    @Benchmark
+    public Optional<User> getUser() {
+        return storages.userStorage.getUser(randomUser());
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return storages.userService.getUserFriends(randomUser());
+    }
+
+    @Benchmark
+    public List<User> getMutualFriends() {
+        long userId = randomUser();
+        return storages.userService.getMutualFriends(userId, userId + 1);
+    }
+
+    @Benchmark
+    public List<User> getRecommendations() {
+        return storages.userService.getRecommendations(randomUser(), 10);
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextInt(1, size);
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HTTP-клиент нагрузочного теста: построение запросов к API и пакетное выполнение запросов подготовки данных
+ */
+class ApiClient {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient http;
+    private final URI baseUri;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    ApiClient(URI baseUri) {
+        this.baseUri = baseUri;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .build();
+    }
+
+    HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    HttpRequest put(String path) {
+        return request(path).PUT(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    HttpRequest delete(String path) {
+        return request(path).DELETE().build();
+    }
+
+    HttpRequest post(String path, Object body) {
+        try {
+            return request(path)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать тело запроса", e);
+        }
+    }
+
+    // Код ответа, тело ответа не читается
+    int send(HttpRequest request) throws IOException, InterruptedException {
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    CompletableFuture<Integer> sendAsync(HttpRequest request) {
+        return http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    }
+
+    // Выполнение запросов подготовки данных не более чем по parallelism одновременно.
+    // Возвращает id созданных объектов в порядке запросов, ответ с ошибкой прерывает подготовку
+    List<Long> createAll(List<HttpRequest> requests, int parallelism) throws InterruptedException {
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<Long>> ids = new ArrayList<>(requests.size());
+        for (HttpRequest request : requests) {
+            permits.acquire();
+            ids.add(http.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(this::readId)
+                    .whenComplete((id, e) -> permits.release()));
+        }
+
+        List<Long> result = new ArrayList<>(ids.size());
+        for (CompletableFuture<Long> id : ids) {
+            result.add(id.join());
+        }
+        return result;
+    }
+
+    private long readId(HttpResponse<String> response) {
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("Ошибка подготовки данных: " + response.request().method() + " "
+                    + response.request().uri() + " -> " + response.statusCode() + " " + response.body());
+        }
+
+        try {
+            return objectMapper.readTree(response.body()).path("id").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Неверный ответ при подготовке данных: " + response.body(), e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).timeout(TIMEOUT);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Обычная работа с каталогом: в основном чтение фильмов и популярного, немного новых фильмов и лайков
+ */
+class CatalogBrowseScenario extends Scenario {
+    private static final int USERS = 500;
+    private static final int FILMS = 1000;
+
+    private List<Long> users;
+    private List<Long> films;
+
+    CatalogBrowseScenario(ApiClient api) {
+        super(api);
+    }
+
+    @Override
+    String getName() {
+        return "catalog-browse";
+    }
+
+    @Override
+    void prepare(Random random) throws InterruptedException {
+        users = createUsers(USERS);
+        films = createFilms(FILMS, random);
+
+        operation(45, r -> call("GET /films/{id}", api.get("/films/" + pick(films, r))));
+        operation(20, r -> call("GET /films/popular", api.get("/films/popular?count=10")));
+        operation(10, r -> call("GET /films?limit", api.get("/films?limit=50")));
+        operation(10, r -> call("GET /users/{id}", api.get("/users/" + pick(users, r))));
+        operation(5, r -> call("GET /films", api.get("/films")));
+        operation(5, r -> call("PUT /films/{id}/like/{userId}",
+                api.put("/films/" + pick(films, r) + "/like/" + pick(users, r))));
+        operation(5, r -> call("POST /films", api.post("/films", Map.of(
+                "name", "New film",
+                "description", "Новый фильм",
+                "releaseDate", "2020-01-01",
+                "duration", 100,
+                "mpa", Map.of("id", 1)))));
+    }
+
+    private static long pick(List<Long> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Обход графа друзей: каждый клиент переходит от пользователя к случайному другу, запрашивая список друзей,
+ * общих друзей и рекомендации друзей. Граф - кольцо, где каждый дружит с RING_FRIENDS ближайшими, плюс RANDOM_FRIENDS случайных друзей.
+ * Граф известен сценарию после подготовки, поэтому ответы не разбираются
+ */
+class FriendGraphCrawlScenario extends Scenario {
+    private static final int USERS = 1000;
+    private static final int RING_FRIENDS = 8;
+    private static final int RANDOM_FRIENDS = 2;
+    // Вероятность начать обход заново со случайного пользователя, в процентах
+    private static final int RESTART_PERCENT = 5;
+
+    private final ThreadLocal<Integer> position = new ThreadLocal<>();
+    private List<Long> users;
+    private int[][] friends;
+
+    FriendGraphCrawlScenario(ApiClient api) {
+        super(api);
+    }
+
+    @Override
+    String getName() {
+        return "friend-graph-crawl";
+    }
+
+    @Override
+    void prepare(Random random) throws InterruptedException {
+        users = createUsers(USERS);
+        friends = new int[USERS][];
+
+        List<HttpRequest> requests = new ArrayList<>();
+        for (int user = 0; user < USERS; user++) {
+            int[] userFriends = new int[RING_FRIENDS + RANDOM_FRIENDS];
+            for (int i = 0; i < RING_FRIENDS / 2; i++) {
+                userFriends[2 * i] = Math.floorMod(user + i + 1, USERS);
+                userFriends[2 * i + 1] = Math.floorMod(user - i - 1, USERS);
+            }
+            for (int i = RING_FRIENDS; i < userFriends.length; i++) {
+                userFriends[i] = randomFriend(user, userFriends, i, random);
+            }
+
+            friends[user] = userFriends;
+            for (int friend : userFriends) {
+                requests.add(api.put("/users/" + users.get(user) + "/friends/" + users.get(friend)));
+            }
+        }
+        api.createAll(requests, PREPARE_PARALLELISM);
+
+        operation(55, this::friends);
+        operation(25, this::mutualFriends);
+        operation(10, r -> call("GET /users/{id}/recommendations",
+                api.get("/users/" + users.get(current(r)) + "/recommendations")));
+        operation(10, r -> call("GET /users/{id}", api.get("/users/" + users.get(current(r)))));
+    }
+
+    // Друзья текущего пользователя, затем переход к одному из них
+    private Call friends(Random random) {
+        int user = current(random);
+        position.set(friends[user][random.nextInt(friends[user].length)]);
+        return call("GET /users/{id}/friends", api.get("/users/" + users.get(user) + "/friends"));
+    }
+
+    private Call mutualFriends(Random random) {
+        int user = current(random);
+        int friend = friends[user][random.nextInt(friends[user].length)];
+        return call("GET /users/{id}/friends/common/{otherId}",
+                api.get("/users/" + users.get(user) + "/friends/common/" + users.get(friend)));
+    }
+
+    private int current(Random random) {
+        Integer user = position.get();
+        if (user == null || random.nextInt(100) < RESTART_PERCENT) {
+            user = random.nextInt(USERS);
+            position.set(user);
+        }
+        return user;
+    }
+
+    private static int randomFriend(int user, int[] userFriends, int count, Random random) {
+        while (true) {
+            int candidate = random.nextInt(USERS);
+            boolean taken = candidate == user;
+            for (int i = 0; i < count && !taken; i++) {
+                taken = userFriends[i] == candidate;
+            }
+            if (!taken) {
+                return candidate;
+            }
+        }
+    }
+}
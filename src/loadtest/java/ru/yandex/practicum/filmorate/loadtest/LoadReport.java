@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Пропускная способность и перцентили задержки по эндпоинтам и по всем запросам вместе
+ */
+class LoadReport {
+    private static final String ROW_FORMAT = "%-45s %9s %7s %9s %9s %9s %9s %9s %9s%n";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, LoadRunner.EndpointStats> stats;
+    private final Duration duration;
+
+    LoadReport(Map<String, LoadRunner.EndpointStats> stats, Duration duration) {
+        this.stats = new TreeMap<>(stats);
+        this.duration = duration;
+    }
+
+    void print(PrintStream out) {
+        out.printf(ROW_FORMAT, "Эндпоинт", "Запросов", "Ошибок", "RPS", "p50 мс", "p90 мс", "p99 мс", "p99.9 мс",
+                "max мс");
+
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        for (Map.Entry<String, LoadRunner.EndpointStats> entry : stats.entrySet()) {
+            Histogram latency = entry.getValue().latency.copy();
+            long errors = entry.getValue().errors.sum();
+            printRow(out, entry.getKey(), latency, errors);
+            total.add(latency);
+            totalErrors += errors;
+        }
+        printRow(out, "Всего", total, totalErrors);
+    }
+
+    private void printRow(PrintStream out, String name, Histogram latency, long errors) {
+        Object[] row = new Object[4 + PERCENTILES.length + 1];
+        row[0] = name;
+        row[1] = String.valueOf(latency.getTotalCount());
+        row[2] = String.valueOf(errors);
+        row[3] = String.format("%.1f", latency.getTotalCount() / (double) duration.toSeconds());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            row[4 + i] = millis(latency.getValueAtPercentile(PERCENTILES[i]));
+        }
+        row[row.length - 1] = millis(latency.getMaxValue());
+        out.printf(ROW_FORMAT, row);
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Выполнение сценария и сбор задержек по эндпоинтам в HdrHistogram (микросекунды).
+ * Закрытая модель: clients потоков, каждый отправляет следующий запрос после ответа на предыдущий.
+ * Открытая модель: запросы отправляются с частотой rate независимо от ответов, не более clients одновременно.
+ * Задержка в открытой модели считается от запланированного времени отправки, поэтому ожидание свободного
+ * места из-за медленных ответов входит в задержку
+ */
+class LoadRunner {
+    private final ApiClient api;
+    private final Scenario scenario;
+    private final int clients;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    LoadRunner(ApiClient api, Scenario scenario, int clients) {
+        this.api = api;
+        this.scenario = scenario;
+        this.clients = clients;
+    }
+
+    LoadReport runClosed(Duration warmup, Duration duration) throws InterruptedException {
+        long start = System.nanoTime();
+        long recordFrom = start + warmup.toNanos();
+        long end = recordFrom + duration.toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            executor.execute(() -> {
+                Random random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    Scenario.Call call = scenario.next(random);
+                    long sent = System.nanoTime();
+                    boolean success;
+                    try {
+                        success = api.send(call.request) < 400;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        success = false;
+                    }
+                    if (sent >= recordFrom) {
+                        record(call.endpoint, System.nanoTime() - sent, success);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(duration.plus(warmup).toSeconds() + 60, TimeUnit.SECONDS);
+
+        return new LoadReport(stats, duration);
+    }
+
+    LoadReport runOpen(double rate, Duration warmup, Duration duration) throws InterruptedException {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long recordFrom = start + warmup.toNanos();
+        long end = recordFrom + duration.toNanos();
+        Semaphore inFlight = new Semaphore(clients);
+        Random random = new Random();
+
+        for (long planned = start; planned < end; planned += interval) {
+            waitUntil(planned);
+            inFlight.acquire();
+
+            Scenario.Call call = scenario.next(random);
+            long scheduled = planned;
+            try {
+                api.sendAsync(call.request).whenComplete((status, e) -> {
+                    if (scheduled >= recordFrom) {
+                        record(call.endpoint, System.nanoTime() - scheduled, e == null && status < 400);
+                    }
+                    inFlight.release();
+                });
+            } catch (RuntimeException e) {
+                // Запрос не отправлен, место освобождается сразу, иначе итоговое ожидание всех ответов не завершится
+                if (scheduled >= recordFrom) {
+                    record(call.endpoint, System.nanoTime() - scheduled, false);
+                }
+                inFlight.release();
+            }
+        }
+        inFlight.acquire(clients);
+
+        return new LoadReport(stats, duration);
+    }
+
+    private void record(String endpoint, long nanos, boolean success) {
+        EndpointStats endpointStats = stats.computeIfAbsent(endpoint, key -> new EndpointStats());
+        endpointStats.latency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (!success) {
+            endpointStats.errors.increment();
+        }
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long delay;
+        while ((delay = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    static class EndpointStats {
+        // Гистограмма с автоматическим расширением диапазона, 3 значащих цифры
+        final Histogram latency = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Нагрузочный тест API. Без --url запускает FilmorateApplication на случайном порту с БД H2 в памяти.
+ * Параметры:
+ * --scenario=catalog-browse|premiere-like-storm|friend-graph-crawl (по умолчанию catalog-browse)
+ * --clients=16 - число клиентов закрытой модели или предел одновременных запросов открытой модели
+ * --rate=0 - запросов в секунду для открытой модели, 0 - закрытая модель
+ * --duration=30 и --warmup=5 - длительность замера и прогрева в секундах
+ * --seed=42 - начальное значение генератора данных сценария
+ * --url=http://host:port - тестировать уже запущенное приложение
+ * Параметры теста можно задавать и без --. Остальные параметры вида --name=value передаются приложению, например --filmorate.likes.write-behind.enabled=true
+ */
+public class LoadTest {
+    private static final List<String> OPTIONS = List.of("scenario", "clients", "rate", "duration", "warmup", "seed",
+            "url");
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest",
+                "--logging.level.root=WARN",
+                "--spring.main.banner-mode=off"));
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (OPTIONS.contains(option[0]) && option.length == 2) {
+                options.put(option[0], option[1]);
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+
+        String scenarioName = options.getOrDefault("scenario", "catalog-browse");
+        int clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        ConfigurableApplicationContext application = null;
+        URI baseUri;
+        if (options.containsKey("url")) {
+            baseUri = URI.create(options.get("url"));
+        } else {
+            application = SpringApplication.run(FilmorateApplication.class, applicationArgs.toArray(new String[0]));
+            int port = ((ServletWebServerApplicationContext) application).getWebServer().getPort();
+            baseUri = URI.create("http://localhost:" + port);
+        }
+
+        try {
+            ApiClient api = new ApiClient(baseUri);
+            Scenario scenario = Scenario.byName(scenarioName, api);
+
+            System.out.printf("Подготовка данных сценария %s на %s%n", scenario.getName(), baseUri);
+            scenario.prepare(new Random(seed));
+
+            LoadRunner runner = new LoadRunner(api, scenario, clients);
+            LoadReport report;
+            if (rate > 0) {
+                System.out.printf("Открытая модель: %.1f запросов/с, не более %d одновременно, прогрев %d с, замер %d с%n",
+                        rate, clients, warmup.toSeconds(), duration.toSeconds());
+                report = runner.runOpen(rate, warmup, duration);
+            } else {
+                System.out.printf("Закрытая модель: %d клиентов, прогрев %d с, замер %d с%n",
+                        clients, warmup.toSeconds(), duration.toSeconds());
+                report = runner.runClosed(warmup, duration);
+            }
+            report.print(System.out);
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+}
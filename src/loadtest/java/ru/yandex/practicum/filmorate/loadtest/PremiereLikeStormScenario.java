@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Премьера: несколько новых фильмов получают лавину лайков, остальные запросы читают популярное и страницу премьеры.
+ * Пользователи лайкают премьеру по очереди, после прохода по всем пользователям лайки так же по очереди снимаются,
+ * поэтому повторных лайков и удаления отсутствующих лайков почти нет
+ */
+class PremiereLikeStormScenario extends Scenario {
+    private static final int USERS = 2000;
+    private static final int FILMS = 200;
+    // Доли лайков по премьерам, в процентах
+    private static final int[] PREMIERE_SHARES = {70, 20, 10};
+
+    private List<Long> users;
+    private List<Long> premieres;
+    private AtomicLongArray likeCursors;
+
+    PremiereLikeStormScenario(ApiClient api) {
+        super(api);
+    }
+
+    @Override
+    String getName() {
+        return "premiere-like-storm";
+    }
+
+    @Override
+    void prepare(Random random) throws InterruptedException {
+        users = createUsers(USERS);
+        createFilms(FILMS, random);
+        premieres = createFilms(PREMIERE_SHARES.length, random);
+        likeCursors = new AtomicLongArray(PREMIERE_SHARES.length);
+
+        operation(75, this::toggleLike);
+        operation(15, r -> call("GET /films/popular", api.get("/films/popular?count=10")));
+        operation(7, r -> call("GET /films/{id}", api.get("/films/" + premieres.get(premiere(r)))));
+        operation(3, r -> call("GET /films/{id}/likes", api.get("/films/" + premieres.get(premiere(r)) + "/likes")));
+    }
+
+    private Call toggleLike(Random random) {
+        int premiere = premiere(random);
+        long n = likeCursors.getAndIncrement(premiere);
+        String path = "/films/" + premieres.get(premiere) + "/like/" + users.get((int) (n % users.size()));
+
+        if ((n / users.size()) % 2 == 0) {
+            return call("PUT /films/{id}/like/{userId}", api.put(path));
+        }
+        return call("DELETE /films/{id}/like/{userId}", api.delete(path));
+    }
+
+    private int premiere(Random random) {
+        int point = random.nextInt(100);
+        int i = 0;
+        while (point >= PREMIERE_SHARES[i]) {
+            point -= PREMIERE_SHARES[i];
+            i++;
+        }
+        return i;
+    }
+}
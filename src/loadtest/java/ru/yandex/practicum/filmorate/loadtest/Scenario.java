@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Сценарий нагрузки: подготовка данных и набор операций с весами.
+ * Операция возвращает Call - запрос и имя эндпоинта, по которому он учитывается в отчете
+ */
+abstract class Scenario {
+    protected static final int PREPARE_PARALLELISM = 16;
+
+    protected final ApiClient api;
+    private final List<Function<Random, Call>> operations = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight;
+
+    protected Scenario(ApiClient api) {
+        this.api = api;
+    }
+
+    static Scenario byName(String name, ApiClient api) {
+        switch (name) {
+            case "catalog-browse":
+                return new CatalogBrowseScenario(api);
+            case "premiere-like-storm":
+                return new PremiereLikeStormScenario(api);
+            case "friend-graph-crawl":
+                return new FriendGraphCrawlScenario(api);
+            default:
+                throw new IllegalArgumentException("Неизвестный сценарий: " + name
+                        + ", доступны catalog-browse, premiere-like-storm, friend-graph-crawl");
+        }
+    }
+
+    abstract String getName();
+
+    // Создание данных сценария через API до начала замеров
+    abstract void prepare(Random random) throws InterruptedException;
+
+    Call next(Random random) {
+        int point = random.nextInt(totalWeight);
+        int i = 0;
+        while (cumulativeWeights.get(i) <= point) {
+            i++;
+        }
+        return operations.get(i).apply(random);
+    }
+
+    protected List<Long> createUsers(int count) throws InterruptedException {
+        List<HttpRequest> requests = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            requests.add(api.post("/users", Map.of(
+                    "email", "load" + i + "@mail.ru",
+                    "login", "load" + i,
+                    "name", "Load user " + i,
+                    "birthday", "1990-01-01")));
+        }
+        return api.createAll(requests, PREPARE_PARALLELISM);
+    }
+
+    protected List<Long> createFilms(int count, Random random) throws InterruptedException {
+        List<HttpRequest> requests = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            requests.add(api.post("/films", Map.of(
+                    "name", "Load film " + i,
+                    "description", "Фильм нагрузочного теста",
+                    "releaseDate", (1950 + random.nextInt(70)) + "-01-01",
+                    "duration", 60 + random.nextInt(120),
+                    "mpa", Map.of("id", 1 + random.nextInt(5)),
+                    "genres", List.of(Map.of("id", 1 + random.nextInt(6))))));
+        }
+        return api.createAll(requests, PREPARE_PARALLELISM);
+    }
+
+    protected void operation(int weight, Function<Random, Call> operation) {
+        totalWeight += weight;
+        operations.add(operation);
+        cumulativeWeights.add(totalWeight);
+    }
+
+    protected Call call(String endpoint, HttpRequest request) {
+        return new Call(endpoint, request);
+    }
+
+    static class Call {
+        final String endpoint;
+        final HttpRequest request;
+
+        Call(String endpoint, HttpRequest request) {
+            this.endpoint = endpoint;
+            this.request = request;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,24 +15,44 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.util.NdjsonWriter;
+import ru.yandex.practicum.filmorate.util.ValidationException;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Positive;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Set;
 
 @Validated
 @RestController
 @RequestMapping("/films")
 @Slf4j
 public class FilmController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_RESULTS = 100;
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, FilmImportService filmImportService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.filmImportService = filmImportService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -38,6 +61,13 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    // Загрузка фильмов из NDJSON, тело запроса читается построчно без загрузки в память целиком
+    @PostMapping(value = "/import", consumes = NdjsonWriter.MEDIA_TYPE)
+    public ImportReport importFilms(InputStream body) throws IOException {
+        log.info("Получен запрос на загрузку фильмов");
+        return filmImportService.importFilms(body);
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film film) {
         log.info("Получен для обновления film: {}", film);
@@ -49,12 +79,71 @@ public class FilmController {
         return filmService.deleteFilm(id);
     }
 
-    @GetMapping
+    // Без параметров фильтра и страницы - все фильмы списком, с параметрами фильтра запрос идет в каталог
+    @GetMapping(params = {"!genre", "!mpa", "!yearFrom", "!yearTo", "!sort", "!count", "!limit"})
     public List<Film> getFilms() {
         log.info("Получен запрос на получение всех фильмов");
         return filmService.getFilms();
     }
 
+    // Каталог: жанры и рейтинги через запятую, диапазон лет включительно, sort=popular - по числу лайков.
+    // В ответе первые count фильмов, число подходящих фильмов и число фильмов по значениям фильтров.
+    // Постраничный вывод limit с фильтрами не сочетается, такой запрос отклоняется, а не теряет фильтр
+    @GetMapping
+    public FilmCatalog getFilmsCatalog(@RequestParam(required = false) Set<Integer> genre,
+                                       @RequestParam(required = false) Set<Integer> mpa,
+                                       @RequestParam(required = false) Integer yearFrom,
+                                       @RequestParam(required = false) Integer yearTo,
+                                       @RequestParam(defaultValue = "id") @Pattern(regexp = "id|popular") String sort,
+                                       @RequestParam(defaultValue = "100") @Positive @Max(MAX_PAGE_SIZE) int count,
+                                       @RequestParam(required = false) String limit) {
+        log.info("Получен запрос каталога фильмов genre = {}, mpa = {}, yearFrom = {}, yearTo = {}, sort = {}, " +
+                "count = {}", genre, mpa, yearFrom, yearTo, sort, count);
+        if (limit != null) {
+            throw new ValidationException("Параметр limit нельзя сочетать с параметрами каталога, используйте count");
+        }
+        FilmFilter filter = new FilmFilter();
+        if (genre != null) {
+            filter.setGenres(genre);
+        }
+        if (mpa != null) {
+            filter.setMpa(mpa);
+        }
+        filter.setYearFrom(yearFrom);
+        filter.setYearTo(yearTo);
+        filter.setPopular("popular".equals(sort));
+        return filmService.getFilmsCatalog(filter, count);
+    }
+
+    @GetMapping(params = {"limit", "!genre", "!mpa", "!yearFrom", "!yearTo", "!sort", "!count"})
+    public Page<Film> getFilmsPage(@RequestParam @Positive @Max(MAX_PAGE_SIZE) int limit,
+                                   @RequestParam(required = false) String after) {
+        log.info("Получен запрос на получение страницы фильмов limit = {}, after = {}", limit, after);
+        return filmService.getFilmsPage(after, limit);
+    }
+
+    // Выгрузка всех фильмов в NDJSON. Ответ пишется по мере чтения из БД, список целиком не собирается
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        log.info("Получен запрос на выгрузку всех фильмов");
+        StreamingResponseBody body = out -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                filmService.exportFilms(writer::write);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NdjsonWriter.MEDIA_TYPE))
+                .body(body);
+    }
+
+    // Поиск по названию и описанию, фильмы по убыванию релевантности
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam @NotBlank String q,
+                                  @RequestParam(defaultValue = "10") @Positive @Max(MAX_SEARCH_RESULTS) int count) {
+        log.info("Получен запрос на поиск фильмов q = {}, count = {}", q, count);
+        return filmService.searchFilms(q, count);
+    }
+
     @GetMapping("/{id}")
     public Film getFilm(@PathVariable @NotNull @Positive Long id) {
         log.info("Получен запрос на получение фильма по id = {}", id);
@@ -67,6 +156,12 @@ public class FilmController {
         return filmService.getTopFilms(Integer.parseInt(count));
     }
 
+    @GetMapping("/{id}/likes")
+    public List<Long> getFilmLikes(@PathVariable @NotNull @Positive Long id) {
+        log.info("Получен запрос на получение лайков фильма id = {}", id);
+        return filmService.getFilmLikes(id);
+    }
+
     @PutMapping("/{id}/like/{userId}")
     public boolean addLikeToFilm(@PathVariable @NotNull @Positive Long id,
                                  @PathVariable @NotNull @Positive Long userId) {
@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,10 +15,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.util.NdjsonWriter;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import java.util.List;
@@ -25,11 +34,17 @@ import java.util.List;
 @RequestMapping("/users")
 @Slf4j
 public class UserController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_RECOMMENDATIONS = 100;
     private final UserService userService;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FilmService filmService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -62,6 +77,27 @@ public class UserController {
         return userService.getUsers();
     }
 
+    @GetMapping(params = "limit")
+    public Page<User> getUsersPage(@RequestParam @Positive @Max(MAX_PAGE_SIZE) int limit,
+                                   @RequestParam(required = false) String after) {
+        log.info("Получен запрос на получение страницы пользователей limit = {}, after = {}", limit, after);
+        return userService.getUsersPage(after, limit);
+    }
+
+    // Выгрузка всех пользователей в NDJSON. Ответ пишется по мере чтения из БД, список целиком не собирается
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        log.info("Получен запрос на выгрузку всех пользователей");
+        StreamingResponseBody body = out -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                userService.exportUsers(writer::write);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NdjsonWriter.MEDIA_TYPE))
+                .body(body);
+    }
+
     @PutMapping("/{id}/friends/{friendId}")
     public User addUserToFriend(@PathVariable @NotNull Long id,
                                 @PathVariable @NotNull Long friendId) {
@@ -89,6 +125,24 @@ public class UserController {
         return userService.getMutualFriends(id, otherId);
     }
 
+    // Возможные друзья: пользователи с наибольшим числом общих друзей
+    @GetMapping("/{id}/recommendations")
+    public List<User> getRecommendations(@PathVariable @NotNull Long id,
+                                         @RequestParam(defaultValue = "10") @Positive @Max(MAX_RECOMMENDATIONS)
+                                         int count) {
+        log.info("Запрос рекомендаций друзей пользователя id = {}, count = {}", id, count);
+        return userService.getRecommendations(id, count);
+    }
+
+    // Рекомендованные фильмы: похожие на те, что понравились пользователю
+    @GetMapping("/{id}/recommended-films")
+    public List<Film> getRecommendedFilms(@PathVariable @NotNull Long id,
+                                          @RequestParam(defaultValue = "10") @Positive @Max(MAX_RECOMMENDATIONS)
+                                          int count) {
+        log.info("Запрос рекомендаций фильмов пользователя id = {}, count = {}", id, count);
+        return filmService.getRecommendedFilms(id, count);
+    }
+
     @PutMapping("/{id}/friends/{otherId}/status")
     public User confirmFriendship(@PathVariable @NotNull Long id,
                                     @PathVariable @NotNull Long otherId) {
@@ -1,39 +1,55 @@
 package ru.yandex.practicum.filmorate.dao.film;
 
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class DbFilmGenreDAO implements FilmGenreDAO {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final GenreDAO genreDAO;
 
-    public DbFilmGenreDAO(JdbcTemplate jdbcTemplate) {
+    public DbFilmGenreDAO(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate, GenreDAO genreDAO) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.genreDAO = genreDAO;
     }
 
+    // Названия жанров берутся из справочника GenreDAO, в БД запрашиваются только id
     @Override
     public Set<Genre> getGenres(long filmId) {
-        String sql = "SELECT fg.genre_id, g.genre FROM film_genre AS fg " +
-                "INNER JOIN genre AS g ON fg.genre_id = g.genre_id " +
-                "WHERE film_id = ?" +
-                "ORDER BY fg.genre_id";
-        SqlRowSet genreRowSet = jdbcTemplate.queryForRowSet(sql, filmId);
-        if (genreRowSet.next()) {
-            genreRowSet.previous();
-            Set<Genre> genres = new LinkedHashSet<>();
-
-            while (genreRowSet.next()) {
-                genres.add(new Genre(genreRowSet.getInt("genre_id"), genreRowSet.getString("genre")));
-            }
-
-            return genres;
+        String sql = "SELECT film_id, genre_id FROM film_genre WHERE film_id = ? ORDER BY genre_id";
+        return jdbcTemplate.query(sql, this::genresByFilm, filmId).get(filmId);
+    }
+
+    // Жанры сразу для набора фильмов одним запросом, ключ - id фильма
+    @Override
+    public Map<Long, Set<Genre>> getGenres(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return new HashMap<>();
         }
-        return null;
+
+        String sql = "SELECT film_id, genre_id FROM film_genre WHERE film_id IN (:ids) ORDER BY film_id, genre_id";
+        return namedJdbcTemplate.query(sql, Map.of("ids", filmIds), this::genresByFilm);
+    }
+
+    // Жанры всех фильмов, используется при выгрузке всей таблицы films
+    @Override
+    public Map<Long, Set<Genre>> getAllFilmsGenres() {
+        String sql = "SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id";
+        return jdbcTemplate.query(sql, this::genresByFilm);
     }
 
     @Override
@@ -42,21 +58,64 @@ public class DbFilmGenreDAO implements FilmGenreDAO {
         return jdbcTemplate.update(sql, id) > 0;
     }
 
+    // Изменяются только отличающиеся жанры: добавленные вставляются, убранные удаляются, оба изменения - батчами.
+    // Жанры сравниваются по id. Если набор не изменился, запросы не выполняются и возвращается false
     @Override
     public boolean updateGenre(long filmId, Set<Genre> prevGenreId, Set<Genre> genres) {
-        removeGenre(filmId);
-        return setGenres(filmId, genres);
+        Set<Integer> prevIds = genreIds(prevGenreId);
+        Set<Integer> newIds = genreIds(genres);
+
+        List<Object[]> removed = prevIds.stream()
+                .filter(genreId -> !newIds.contains(genreId))
+                .map(genreId -> new Object[]{filmId, genreId})
+                .collect(Collectors.toList());
+        List<Object[]> added = newIds.stream()
+                .filter(genreId -> !prevIds.contains(genreId))
+                .map(genreId -> new Object[]{filmId, genreId})
+                .collect(Collectors.toList());
+
+        if (!removed.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?", removed);
+        }
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", added);
+        }
+
+        return !removed.isEmpty() || !added.isEmpty();
     }
 
     @Override
     public boolean setGenres(long filmId, Set<Genre> genres) {
-        String sql = "INSERT INTO film_genre (film_id, genre_id)" +
-                "VALUES (?, ?)";
+        String sql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
 
-        for (Genre genre : genres) {
-            jdbcTemplate.update(sql, filmId, genre.getId());
-        }
+        List<Object[]> rows = genreIds(genres).stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(sql, rows);
 
         return true;
     }
+
+    // Набор id жанров в порядке переданного множества, null считается пустым набором
+    private Set<Integer> genreIds(Set<Genre> genres) {
+        if (genres == null) {
+            return new LinkedHashSet<>();
+        }
+
+        return genres.stream()
+                .map(Genre::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private Map<Long, Set<Genre>> genresByFilm(ResultSet rs) throws SQLException {
+        Map<Long, Set<Genre>> genres = new HashMap<>();
+
+        while (rs.next()) {
+            int genreId = rs.getInt("genre_id");
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new LinkedHashSet<>())
+                    .add(genreDAO.getGenre(genreId).orElseGet(() -> new Genre(genreId, null)));
+        }
+
+        return genres;
+    }
 }
\ No newline at end of file
@@ -2,28 +2,106 @@ package ru.yandex.practicum.filmorate.dao.film;
 
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.util.StreamingQuery;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component
 public class DbFilmLikesDAO implements LikesDAO {
+    private static final int FETCH_SIZE = 10_000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
 
-    public DbFilmLikesDAO(JdbcTemplate jdbcTemplate) {
+    public DbFilmLikesDAO(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
     }
 
+    // Счетчик films.likes_count меняется в той же транзакции, что и film_likes
     @Override
     public boolean addLike(long filmId, long userId) {
         String sql = "INSERT INTO film_likes (film_id, user_id)" +
                 "VALUES(?, ?)";
-        return jdbcTemplate.update(sql, filmId, userId) > 0;
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(sql, filmId, userId) > 0) {
+                updateLikesCount(filmId, 1);
+                return true;
+            }
+            return false;
+        }));
     }
 
     @Override
     public boolean removeLike(long filmId, long userId) {
         String sql = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-        return jdbcTemplate.update(sql, filmId, userId) > 0;
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (jdbcTemplate.update(sql, filmId, userId) > 0) {
+                updateLikesCount(filmId, -1);
+                return true;
+            }
+            return false;
+        }));
+    }
+
+    @Override
+    public boolean likeExist(long filmId, long userId) {
+        String sql = "SELECT film_id FROM film_likes WHERE film_id = ? AND user_id = ?";
+        return jdbcTemplate.queryForRowSet(sql, filmId, userId).next();
+    }
+
+    // Пакетная запись лайков одной транзакцией. Повторные лайки и лайки удаленных фильмов или пользователей
+    // пропускаются, films.likes_count меняется на число действительно вставленных и удаленных строк.
+    // Возвращает пропущенные лайки из added
+    public List<FilmLike> saveLikes(Collection<FilmLike> added, Collection<FilmLike> removed) {
+        String insertSql = "INSERT INTO film_likes (film_id, user_id) " +
+                "SELECT f.film_id, u.user_id FROM films AS f, users AS u WHERE f.film_id = ? AND u.user_id = ? " +
+                "AND NOT EXISTS (SELECT film_id FROM film_likes WHERE film_id = ? AND user_id = ?)";
+        String deleteSql = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+        String countSql = "UPDATE films SET likes_count = likes_count + ? WHERE film_id = ?";
+
+        List<FilmLike> addedList = new ArrayList<>(added);
+        List<FilmLike> removedList = new ArrayList<>(removed);
+
+        return transactionTemplate.execute(status -> {
+            Map<Long, Integer> delta = new HashMap<>();
+            List<FilmLike> skipped = new ArrayList<>();
+
+            int[] inserted = jdbcTemplate.batchUpdate(insertSql, addedList.stream()
+                    .map(like -> new Object[]{like.getFilmId(), like.getUserId(), like.getFilmId(), like.getUserId()})
+                    .collect(Collectors.toList()));
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    delta.merge(addedList.get(i).getFilmId(), 1, Integer::sum);
+                } else {
+                    skipped.add(addedList.get(i));
+                }
+            }
+
+            int[] deleted = jdbcTemplate.batchUpdate(deleteSql, removedList.stream()
+                    .map(like -> new Object[]{like.getFilmId(), like.getUserId()})
+                    .collect(Collectors.toList()));
+            for (int i = 0; i < deleted.length; i++) {
+                if (deleted[i] > 0) {
+                    delta.merge(removedList.get(i).getFilmId(), -1, Integer::sum);
+                }
+            }
+
+            jdbcTemplate.batchUpdate(countSql, delta.entrySet().stream()
+                    .filter(entry -> entry.getValue() != 0)
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .collect(Collectors.toList()));
+            return skipped;
+        });
     }
 
     @Override
@@ -32,9 +110,49 @@ public class DbFilmLikesDAO implements LikesDAO {
         return jdbcTemplate.queryForList(sql, Long.class, filmId);
     }
 
+    @Override
+    public Map<Long, Integer> getAllLikesCount() {
+        String sql = "SELECT film_id, COUNT(user_id) AS likes FROM film_likes GROUP BY film_id";
+        return jdbcTemplate.query(sql, this::likesCountByFilm);
+    }
+
+    // Все лайки по одному по мере чтения, таблица не загружается в память целиком
+    @Override
+    public void forEachLike(Consumer<FilmLike> action) {
+        String sql = "SELECT film_id, user_id FROM film_likes";
+        StreamingQuery.query(jdbcTemplate, sql, FETCH_SIZE, (ResultSet rs) -> {
+            action.accept(new FilmLike(rs.getLong("film_id"), rs.getLong("user_id")));
+        });
+    }
+
+    // Фильмы с лайками по убыванию films.likes_count, читается по индексу films_likes_count_idx
     @Override
     public List<Long> getTopFilms(int count) {
-        String sql = "SELECT film_id FROM film_likes GROUP BY film_id ORDER BY COUNT(user_id) DESC LIMIT ?";
+        String sql = "SELECT film_id FROM films WHERE likes_count > 0 ORDER BY likes_count DESC, film_id LIMIT ?";
         return jdbcTemplate.queryForList(sql, Long.class, count);
     }
+
+    // Пересчет films.likes_count по film_likes, возвращает количество исправленных фильмов
+    @Override
+    public int recalculateLikesCount() {
+        String sql = "UPDATE films AS f SET likes_count = " +
+                "(SELECT COUNT(user_id) FROM film_likes AS fl WHERE fl.film_id = f.film_id) " +
+                "WHERE likes_count <> (SELECT COUNT(user_id) FROM film_likes AS fl WHERE fl.film_id = f.film_id)";
+        return jdbcTemplate.update(sql);
+    }
+
+    private void updateLikesCount(long filmId, int delta) {
+        String sql = "UPDATE films SET likes_count = likes_count + ? WHERE film_id = ?";
+        jdbcTemplate.update(sql, delta, filmId);
+    }
+
+    private Map<Long, Integer> likesCountByFilm(ResultSet rs) throws SQLException {
+        Map<Long, Integer> likes = new HashMap<>();
+
+        while (rs.next()) {
+            likes.put(rs.getLong("film_id"), rs.getInt("likes"));
+        }
+
+        return likes;
+    }
 }
\ No newline at end of file
@@ -1,23 +1,48 @@
 package ru.yandex.practicum.filmorate.dao.film;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.RatingMpa;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.util.KeyLocks;
 import ru.yandex.practicum.filmorate.util.StorageException;
+import ru.yandex.practicum.filmorate.util.StreamingQuery;
 
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -26,34 +51,125 @@ import java.util.stream.Collectors;
 
 @Component
 @Primary
+@Slf4j
 public class FilmDbStorage implements FilmStorage {
+    private static final int FILM_LOCKS = 64;
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
     private final FilmGenreDAO filmGenreDAO;
-    private final LikesDAO likesDAO;
     private final RatingMpaDAO ratingMpaDAO;
+    private final GenreDAO genreDAO;
+    private final FilmLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final int exportFetchSize;
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private final FilmFacetIndex facetIndex = new FilmFacetIndex();
+    // Запись фильма в БД и изменение индексов по нему выполняются под блокировкой фильма,
+    // поэтому индексы меняются в порядке фиксации транзакций
+    private final KeyLocks filmLocks = new KeyLocks(FILM_LOCKS);
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate, FilmGenreDAO filmGenreDAO, LikesDAO likesDAO, RatingMpaDAO ratingMpaDAO) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         FilmGenreDAO filmGenreDAO, RatingMpaDAO ratingMpaDAO, GenreDAO genreDAO,
+                         FilmLeaderboard leaderboard, LikeIndex likeIndex,
+                         @Value("${filmorate.export.fetch-size:500}") int exportFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
         this.filmGenreDAO = filmGenreDAO;
-        this.likesDAO = likesDAO;
         this.ratingMpaDAO = ratingMpaDAO;
+        this.genreDAO = genreDAO;
+        this.leaderboard = leaderboard;
+        this.likeIndex = likeIndex;
+        this.exportFetchSize = exportFetchSize;
     }
 
+    // Загрузка индексов поиска и каталога при старте: films и film_genre читаются порциями,
+    // из films - только поля, которые попадают в индексы
+    @PostConstruct
+    public void loadIndexes() {
+        FilmFacetIndex.Loader facets = new FilmFacetIndex.Loader();
+        searchIndex.clear();
+        stream("SELECT film_id, name, description, rating, release_date FROM films", rs -> {
+            long filmId = rs.getLong("film_id");
+            int ratingId = rs.getInt("rating");
+            searchIndex.put(filmId, rs.getString("name"), rs.getString("description"));
+            facets.addFilm(filmId, rs.wasNull() ? null : ratingId, rs.getDate("release_date").toLocalDate());
+        });
+        stream("SELECT film_id, genre_id FROM film_genre", rs -> facets.addGenre(rs.getLong("film_id"),
+                rs.getInt("genre_id")));
+        facetIndex.load(facets);
+        log.info("Индексы поиска и каталога фильмов загружены, фильмов: {}", facetIndex.size());
+    }
+
+    // Фильм и его жанры записываются одной транзакцией. Ответ собирается из переданного фильма и полученного id
+    // без повторного чтения из БД
     @Override
     public Optional<Film> saveFilm(Film film) {
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("films")
-                .usingGeneratedKeyColumns("film_id");
-        long filmId = simpleJdbcInsert.executeAndReturnKey(filmToMap(film)).longValue();
+        if (film == null) {
+            throw new StorageException("Получен null для сохранения");
+        }
 
-        if (film.getGenres() != null) {
-            filmGenreDAO.setGenres(filmId, film.getGenres());
+        // id известен только после вставки, блокировка берется внутри транзакции и держится до изменения индексов
+        List<Lock> locks = new ArrayList<>();
+        try {
+            Optional<Film> saved = transactionTemplate.execute(status -> {
+                long filmId = insertFilms(List.of(film)).get(0);
+                filmLocks.lockAll(List.of(filmId), locks);
+
+                if (film.getGenres() != null) {
+                    filmGenreDAO.setGenres(filmId, film.getGenres());
+                }
+
+                return Optional.of(savedFilm(film, filmId));
+            });
+            saved.ifPresent(this::index);
+            return saved;
+        } finally {
+            KeyLocks.unlockAll(locks);
         }
+    }
 
-        return getFilm(filmId);
+    // Пакетное сохранение в одной транзакции: фильмы вставляются одним JDBC батчем с возвратом ключей,
+    // жанры всех фильмов - вторым батчем. Фильмы не перечитываются из БД, им только проставляются id
+    @Override
+    public List<Film> saveFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        List<Lock> locks = new ArrayList<>();
+        try {
+            List<Film> saved = transactionTemplate.execute(status -> {
+                List<Long> filmsId = insertFilms(films);
+                filmLocks.lockAll(filmsId, locks);
+                for (int i = 0; i < films.size(); i++) {
+                    films.get(i).setId(filmsId.get(i));
+                }
+
+                List<Object[]> genres = new ArrayList<>();
+                for (Film film : films) {
+                    if (film.getGenres() != null) {
+                        film.getGenres().stream()
+                                .map(Genre::getId)
+                                .distinct()
+                                .forEach(genreId -> genres.add(new Object[]{film.getId(), genreId}));
+                    }
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", genres);
+
+                return films;
+            });
+            saved.forEach(this::index);
+            return saved;
+        } finally {
+            KeyLocks.unlockAll(locks);
+        }
     }
 
+    // Обновление фильма и жанров одной транзакцией, ответ собирается из переданного фильма без повторного чтения
     @Override
     public Optional<Film> updateFilm(Film film) {
         String sql = "UPDATE films SET name = ?, description = ?, release_date = ?," +
@@ -63,26 +179,29 @@ public class FilmDbStorage implements FilmStorage {
             throw new StorageException("Получен null для обновления");
         }
 
-        jdbcTemplate.update(sql,
-                film.getName(),
-                film.getDescription(),
-                film.getReleaseDate(),
-                film.getMpa().getId(),
-                film.getDuration(),
-                film.getId());
+        return filmLocks.withLock(film.getId(), () -> {
+            Optional<Film> updatedFilm = transactionTemplate.execute(status -> {
+                int updated = jdbcTemplate.update(sql,
+                        film.getName(),
+                        film.getDescription(),
+                        film.getReleaseDate(),
+                        film.getMpa().getId(),
+                        film.getDuration(),
+                        film.getId());
 
-        // Достаем предыдущий жанр
-        Set<Genre> prevGenreSet = filmGenreDAO.getGenres(film.getId());
+                if (updated == 0) {
+                    return Optional.empty();
+                }
 
-        // Если у фильма задан жанр - добавляем в связующую таблицу
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            filmGenreDAO.updateGenre(film.getId(), prevGenreSet, film.getGenres());
-        } // Иначе если жанры у фильма отсутствуют, удаляем предыдущие связи с жанрами
-        else if (prevGenreSet != null && !prevGenreSet.isEmpty()) {
-            filmGenreDAO.removeGenre(film.getId());
-        }
+                // Жанры меняются только на разницу с сохраненными, без жанров у фильма удаляются все связи
+                Set<Genre> prevGenreSet = filmGenreDAO.getGenres(film.getId());
+                filmGenreDAO.updateGenre(film.getId(), prevGenreSet, film.getGenres());
 
-        return getFilm(film.getId());
+                return Optional.of(savedFilm(film, film.getId()));
+            });
+            updatedFilm.ifPresent(this::index);
+            return updatedFilm;
+        });
     }
 
     @Override
@@ -92,75 +211,246 @@ public class FilmDbStorage implements FilmStorage {
         if (films.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.ofNullable(jdbcTemplate.query(sql, (rs, rowNum) -> filmFromDb(rs), id).get(0));
+        return Optional.of(fillFilms(films).get(0));
     }
 
     @Override
     public boolean deleteFilm(long id) {
         String sql = "DELETE FROM films WHERE film_id = ?";
-        return jdbcTemplate.update(sql, id) > 0;
+        return filmLocks.withLock(id, () -> {
+            if (jdbcTemplate.update(sql, id) > 0) {
+                leaderboard.removeFilm(id);
+                likeIndex.removeFilm(id);
+                searchIndex.remove(id);
+                facetIndex.remove(id);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public boolean filmExist(long id) {
+        String sql = "SELECT film_id FROM films WHERE film_id = ?";
+        return jdbcTemplate.queryForRowSet(sql, id).next();
     }
 
     @Override
     public List<Film> getFilms() {
-        String sql = "SELECT * FROM films";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> filmFromDb(rs));
+        String sql = "SELECT * FROM films ORDER BY film_id";
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> filmFromDb(rs));
+        return fillFilms(films, filmGenreDAO.getAllFilmsGenres());
     }
 
+    // Фильмы по набору id одним запросом в порядке переданных id, несуществующие id пропускаются
+    @Override
+    public List<Film> getFilms(Collection<Long> filmsId) {
+        if (filmsId.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String sql = "SELECT * FROM films WHERE film_id IN (:ids)";
+        Map<Long, Film> filmsById = namedJdbcTemplate.query(sql, Map.of("ids", filmsId), (rs, rowNum) -> filmFromDb(rs))
+                .stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+
+        List<Film> films = filmsId.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return fillFilms(films);
+    }
+
+    // Страница фильмов по первичному ключу, стоимость не зависит от номера страницы
+    @Override
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        String sql = "SELECT * FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?";
+        return fillFilms(jdbcTemplate.query(sql, (rs, rowNum) -> filmFromDb(rs), afterId, limit));
+    }
+
+    // id популярных фильмов берутся из рейтинга в памяти, данные фильмов загружаются одним запросом
     @Override
     public List<Film> getTopFilms(int count) {
-        List<Long> filmsId = likesDAO.getTopFilms(count);
+        List<Long> filmsId = leaderboard.getTopFilms(count);
 
+        // Если лайков еще нет ни у одного фильма, возвращаем первые count фильмов
         if (filmsId.isEmpty()) {
-            return getFilms().stream()
-                    .limit(count)
-                    .collect(Collectors.toList());
+            String sql = "SELECT * FROM films ORDER BY film_id LIMIT ?";
+            return fillFilms(jdbcTemplate.query(sql, (rs, rowNum) -> filmFromDb(rs), count));
         }
 
-        return filmsId.stream()
-                .map(this::getFilm)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
+        // Сохраняем порядок рейтинга
+        return getFilms(filmsId);
+    }
+
+    // id фильмов берутся из индекса поиска в порядке релевантности, данные фильмов загружаются одним запросом
+    @Override
+    public List<Film> searchFilms(String query, int count) {
+        return getFilms(Arrays.stream(searchIndex.search(query, count)).boxed().collect(Collectors.toList()));
+    }
+
+    // Фильмы и число фильмов по значениям фильтров берутся из индекса каталога, популярность - из рейтинга,
+    // данные первых count фильмов загружаются одним запросом
+    @Override
+    public FilmCatalog filterFilms(FilmFilter filter, int count) {
+        FilmFacetIndex.Result result = facetIndex.filter(filter);
+        long[] filmsId = FilmFacetIndex.select(result.getFilms(), count,
+                filter.isPopular() ? leaderboard::getLikes : null);
+        return new FilmCatalog(getFilms(Arrays.stream(filmsId).boxed().collect(Collectors.toList())),
+                result.getFilms().cardinality(), result.getFacets());
+    }
+
+    // Обход всех фильмов без загрузки таблицы в память: ResultSet читается порциями по exportFetchSize строк,
+    // строки одного фильма идут подряд и собираются в один Film, который сразу передается в action
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        String sql = "SELECT f.*, fg.genre_id FROM films AS f " +
+                "LEFT JOIN film_genre AS fg ON f.film_id = fg.film_id ORDER BY f.film_id, fg.genre_id";
+
+        StreamingQuery.query(jdbcTemplate, sql, exportFetchSize, (ResultSet rs) -> {
+            Film film = null;
+            while (rs.next()) {
+                if (film == null || film.getId() != rs.getLong("film_id")) {
+                    if (film != null) {
+                        action.accept(film);
+                    }
+                    film = filmFromDb(rs);
+                }
+
+                int genreId = rs.getInt("genre_id");
+                if (!rs.wasNull()) {
+                    if (film.getGenres() == null) {
+                        film.setGenres(new LinkedHashSet<>());
+                    }
+                    film.getGenres().add(genreDAO.getGenre(genreId).orElseGet(() -> new Genre(genreId, null)));
+                }
+            }
+            if (film != null) {
+                action.accept(film);
+            }
+            return null;
+        });
+    }
+
+    // Индексы обновляются после завершения транзакции, чтобы не попали отмененные изменения,
+    // но до снятия блокировки фильма
+    private void index(Film film) {
+        searchIndex.put(film.getId(), film.getName(), film.getDescription());
+        facetIndex.put(film.getId(), genresId(film), film.getMpa() != null ? film.getMpa().getId() : null,
+                film.getReleaseDate());
+    }
+
+    private static List<Integer> genresId(Film film) {
+        if (film.getGenres() == null) {
+            return List.of();
+        }
+        return film.getGenres().stream()
+                .map(Genre::getId)
                 .collect(Collectors.toList());
     }
 
-    // Преобразование Film в Map для SimpleJdbcInsert
-    private Map<String, Object> filmToMap(Film film) {
-        if (film == null) {
-            throw new StorageException("Получен null для сохранения");
+    // Построчное чтение запроса порциями по exportFetchSize строк
+    private void stream(String sql, RowCallbackHandler handler) {
+        StreamingQuery.query(jdbcTemplate, sql, exportFetchSize, handler);
+    }
+
+    // JdbcTemplate не умеет возвращать сгенерированные ключи для батча, поэтому батч выполняется на соединении напрямую.
+    // Возвращает id фильмов в порядке списка
+    private List<Long> insertFilms(List<Film> films) {
+        String sql = "INSERT INTO films (name, description, rating, release_date, duration) VALUES (?, ?, ?, ?, ?)";
+
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(sql, new String[]{"film_id"})) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    if (film.getMpa() != null) {
+                        ps.setInt(3, film.getMpa().getId());
+                    } else {
+                        ps.setNull(3, Types.INTEGER);
+                    }
+                    ps.setDate(4, Date.valueOf(film.getReleaseDate()));
+                    ps.setInt(5, film.getDuration());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> filmsId = new ArrayList<>(films.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        filmsId.add(keys.getLong(1));
+                    }
+                }
+                if (filmsId.size() != films.size()) {
+                    // DataAccessException, как и другие ошибки записи, чтобы импорт сохранил порцию по одному фильму
+                    throw new DataRetrievalFailureException("Не получены id сохраненных фильмов");
+                }
+                return filmsId;
+            }
+        });
+    }
+
+    // Фильм для ответа после записи: поля берутся из переданного фильма, рейтинг и названия жанров - из справочников,
+    // количество лайков - из рейтинга популярности. Жанры упорядочены по id, как при чтении из БД
+    private Film savedFilm(Film film, long filmId) {
+        Film saved = new Film(film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration());
+        saved.setId(filmId);
+        saved.setLikesCount(leaderboard.getLikes(filmId));
+
+        if (film.getMpa() != null) {
+            int ratingId = film.getMpa().getId();
+            saved.setMpa(ratingMpaDAO.getRatingById(ratingId).orElseGet(() -> new RatingMpa(ratingId, null)));
         }
 
-        Map<String, Object> filmMap = new HashMap<>();
-        filmMap.put("name", film.getName());
-        filmMap.put("description", film.getDescription());
-        filmMap.put("rating", film.getMpa().getId());
-        filmMap.put("release_date", film.getReleaseDate());
-        filmMap.put("duration", film.getDuration());
-        return filmMap;
+        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
+            saved.setGenres(film.getGenres().stream()
+                    .map(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .map(genreId -> genreDAO.getGenre(genreId).orElseGet(() -> new Genre(genreId, null)))
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
+        }
+
+        return saved;
     }
 
+    // Заполняет поля из строки films, рейтинг берется из справочника. Жанры добавляются в fillFilms
     private Film filmFromDb(ResultSet rs) throws SQLException {
         Film film = new Film(rs.getString("name"),
                 rs.getString("description"),
                 rs.getDate("release_date").toLocalDate(),
                 rs.getInt("duration"));
         film.setId(rs.getLong("film_id"));
+        film.setMpa(ratingMpaDAO.getRatingById(rs.getInt("rating")).orElse(null));
+        film.setLikesCount(rs.getInt("likes_count"));
+        return film;
+    }
 
-        // Задаем фильму жанры
-        Set<Genre> genres = filmGenreDAO.getGenres(film.getId());
-        if (genres != null) {
-            film.setGenres(genres);
+    private List<Film> fillFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
         }
 
-        // Задаем фильму рейтинг
-        RatingMpa filmRating = ratingMpaDAO.getRatingById(rs.getInt("rating")).orElse(null);
-        film.setMpa(filmRating);
+        List<Long> filmsId = films.stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+        return fillFilms(films, filmGenreDAO.getGenres(filmsId));
+    }
+
+    // Дозаполнение жанров фильмов одним запросом на весь список вместо запроса на каждый фильм
+    private List<Film> fillFilms(List<Film> films, Map<Long, Set<Genre>> genres) {
+        if (films.isEmpty()) {
+            return films;
+        }
 
-        // Добавляем лайки
-        for (long userId : likesDAO.getFilmLikes(film.getId())) {
-            film.addLike(userId);
+        for (Film film : films) {
+            // Задаем фильму жанры
+            Set<Genre> filmGenres = genres.get(film.getId());
+            if (filmGenres != null) {
+                film.setGenres(filmGenres);
+            }
         }
 
-        return film;
+        return films;
     }
 }
@@ -2,6 +2,8 @@ package ru.yandex.practicum.filmorate.dao.film;
 
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 public interface FilmGenreDAO {
@@ -11,5 +13,9 @@ public interface FilmGenreDAO {
 
     Set<Genre> getGenres(long filmId);
 
+    Map<Long, Set<Genre>> getGenres(Collection<Long> filmIds);
+
+    Map<Long, Set<Genre>> getAllFilmsGenres();
+
     boolean removeGenre(long id);
 }
\ No newline at end of file
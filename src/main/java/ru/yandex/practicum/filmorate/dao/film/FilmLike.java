@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import lombok.Data;
+
+/**
+ * Пара (фильм, пользователь) - одна строка таблицы film_likes
+ */
+@Data
+public class FilmLike {
+    private final long filmId;
+    private final long userId;
+}
@@ -1,43 +1,60 @@
 package ru.yandex.practicum.filmorate.dao.film;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+/**
+ * DAO для таблицы genre. Таблица загружается целиком при старте в массив, индекс которого - id жанра.
+ * Все запросы обслуживаются из массива, при изменении таблицы нужно вызвать refresh()
+ */
 @Component
+@Slf4j
 public class GenreDAO {
     private final JdbcTemplate jdbcTemplate;
+    private volatile Genre[] genresById = new Genre[0];
 
     public GenreDAO(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public List<Genre> getAllGenres() {
-        String sql = "SELECT * FROM genre";
-        return jdbcTemplate.query(sql, (rs) -> {
-            List<Genre> genres = new ArrayList<>();
+    @PostConstruct
+    public void refresh() {
+        String sql = "SELECT genre_id, genre FROM genre ORDER BY genre_id";
+        List<Genre> genres = jdbcTemplate.query(sql, (rs, rowNum) -> genreFromBd(rs));
 
-            while (rs.next()) {
-                genres.add(genreFromBd(rs));
-            }
+        Genre[] loaded = new Genre[genres.isEmpty() ? 0 : genres.get(genres.size() - 1).getId() + 1];
+        for (Genre genre : genres) {
+            loaded[genre.getId()] = genre;
+        }
 
-            return genres;
-        });
+        genresById = loaded;
+        log.info("Загружен справочник жанров, жанров: {}", genres.size());
+    }
+
+    public List<Genre> getAllGenres() {
+        return Arrays.stream(genresById)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
     }
 
     public Optional<Genre> getGenre(int genreId) {
-        String sql = "SELECT genre_id, genre FROM genre WHERE genre_id = ?";
-        List<Genre> genres = jdbcTemplate.query(sql, (rs, rowNum) -> genreFromBd(rs), genreId);
-        if (genres.isEmpty()) {
+        Genre[] genres = genresById;
+        if (genreId < 0 || genreId >= genres.length) {
             return Optional.empty();
         }
-        return Optional.ofNullable(genres.get(0));
+        return Optional.ofNullable(genres[genreId]);
     }
 
     private Genre genreFromBd(ResultSet rs) throws SQLException {
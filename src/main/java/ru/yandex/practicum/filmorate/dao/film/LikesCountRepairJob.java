@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+
+/**
+ * Периодический пересчет films.likes_count по таблице film_likes.
+ * Исправляет счетчики, разошедшиеся с film_likes, например после ручных правок БД,
+ * и сверяет с film_likes рейтинг популярности в памяти
+ */
+@Component
+@Slf4j
+public class LikesCountRepairJob {
+    private final LikesDAO likesDAO;
+    private final FilmLeaderboard leaderboard;
+
+    public LikesCountRepairJob(LikesDAO likesDAO, FilmLeaderboard leaderboard) {
+        this.likesDAO = likesDAO;
+        this.leaderboard = leaderboard;
+    }
+
+    @Scheduled(cron = "${filmorate.likes.repair-cron:0 0 4 * * *}")
+    public void repair() {
+        int repaired = likesDAO.recalculateLikesCount();
+        if (repaired > 0) {
+            log.warn("Пересчитано количество лайков у {} фильмов", repaired);
+        } else {
+            log.info("Количество лайков у фильмов совпадает с film_likes");
+        }
+
+        int reconciled = leaderboard.reconcile(likesDAO.getAllLikesCount());
+        if (reconciled > 0) {
+            log.warn("Исправлено количество лайков в рейтинге у {} фильмов", reconciled);
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package ru.yandex.practicum.filmorate.dao.film;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface LikesDAO {
     boolean addLike(long filmId, long userId);
 
     boolean removeLike(long filmId, long userId);
 
+    boolean likeExist(long filmId, long userId);
+
     List<Long> getFilmLikes(long filmId);
 
+    Map<Long, Integer> getAllLikesCount();
+
+    void forEachLike(Consumer<FilmLike> action);
+
     List<Long> getTopFilms(int count);
+
+    int recalculateLikesCount();
 }
\ No newline at end of file
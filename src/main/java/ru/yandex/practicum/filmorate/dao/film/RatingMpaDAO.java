@@ -1,43 +1,60 @@
 package ru.yandex.practicum.filmorate.dao.film;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.RatingMpa;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+/**
+ * DAO для таблицы rating_mpa. Таблица загружается целиком при старте в массив, индекс которого - id рейтинга.
+ * Все запросы обслуживаются из массива, при изменении таблицы нужно вызвать refresh()
+ */
 @Component
+@Slf4j
 public class RatingMpaDAO {
     private final JdbcTemplate jdbcTemplate;
+    private volatile RatingMpa[] ratingsById = new RatingMpa[0];
 
     public RatingMpaDAO(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public List<RatingMpa> getAllRatings() {
-        String sql = "SELECT * FROM rating_mpa";
-        return jdbcTemplate.query(sql, (rs) -> {
-            List<RatingMpa> rating = new ArrayList<>();
+    @PostConstruct
+    public void refresh() {
+        String sql = "SELECT rating_id, rating FROM rating_mpa ORDER BY rating_id";
+        List<RatingMpa> ratings = jdbcTemplate.query(sql, (rs, rowNum) -> ratingFromBd(rs));
 
-            while (rs.next()) {
-                rating.add(ratingFromBd(rs));
-            }
+        RatingMpa[] loaded = new RatingMpa[ratings.isEmpty() ? 0 : ratings.get(ratings.size() - 1).getId() + 1];
+        for (RatingMpa rating : ratings) {
+            loaded[rating.getId()] = rating;
+        }
 
-            return rating;
-        });
+        ratingsById = loaded;
+        log.info("Загружен справочник рейтингов МРА, рейтингов: {}", ratings.size());
+    }
+
+    public List<RatingMpa> getAllRatings() {
+        return Arrays.stream(ratingsById)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
     }
 
     public Optional<RatingMpa> getRatingById(int ratingId) {
-        String sql = "SELECT rating_id, rating FROM rating_mpa WHERE rating_id = ?";
-        List<RatingMpa> ratings = jdbcTemplate.query(sql, (rs, rowNum) -> ratingFromBd(rs), ratingId);
-        if (ratings.isEmpty()) {
+        RatingMpa[] ratings = ratingsById;
+        if (ratingId < 0 || ratingId >= ratings.length) {
             return Optional.empty();
         }
-        return Optional.ofNullable(ratings.get(0));
+        return Optional.ofNullable(ratings[ratingId]);
     }
 
     private RatingMpa ratingFromBd(ResultSet rs) throws SQLException {
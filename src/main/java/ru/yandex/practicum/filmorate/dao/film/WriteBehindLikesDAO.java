@@ -0,0 +1,357 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.util.StorageException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Отложенная запись лайков. Включается свойством filmorate.likes.write-behind.enabled.
+ * Лайки и их удаления накапливаются в памяти по паре (фильм, пользователь), противоположные операции над одной парой
+ * взаимно уничтожаются. Фоновый поток раз в flush-interval-ms или при накоплении batch-size операций записывает их
+ * в film_likes одной транзакцией.
+ * При durability = RELAXED запрос возвращается сразу, при падении приложения теряются операции за последний интервал.
+ * При durability = STRICT запрос ждет записи своей операции в БД, несколько запросов попадают в одну транзакцию.
+ * Лайки, пропущенные при записи (фильм или пользователь удален), убираются из рейтинга и индекса лайков
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class WriteBehindLikesDAO implements LikesDAO {
+    private static final long STRICT_TIMEOUT_SECONDS = 30;
+
+    private final DbFilmLikesDAO likesDAO;
+    // Рейтинг и индекс сами зависят от LikesDAO, поэтому получаются при первой записи
+    private final ObjectProvider<FilmLeaderboard> leaderboard;
+    private final ObjectProvider<LikeIndex> likeIndex;
+    private final Durability durability;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final int capacity;
+
+    // Операции, еще не переданные в БД. Значение true - лайк, false - удаление лайка
+    private final Map<FilmLike, Boolean> pending = new ConcurrentHashMap<>();
+    // Операции текущей записи в БД. Учитываются при проверке наличия лайка, пока транзакция не завершена
+    private final Map<FilmLike, Boolean> inFlight = new ConcurrentHashMap<>();
+    // Завершается после записи в БД всех операций, добавленных до начала следующей записи
+    private final AtomicReference<CompletableFuture<Void>> nextFlush = new AtomicReference<>(new CompletableFuture<>());
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // Число успешных записей. Увеличивается до очистки inFlight, по нему проверяется, что прочитанное из БД
+    // состояние пары не устарело
+    private final AtomicLong flushes = new AtomicLong();
+    private ScheduledExecutorService flusher;
+    // После остановки фонового потока записи по расписанию уже не будет, операции записываются сразу
+    private volatile boolean stopped;
+
+    @Autowired
+    public WriteBehindLikesDAO(DbFilmLikesDAO likesDAO,
+                               ObjectProvider<FilmLeaderboard> leaderboard,
+                               ObjectProvider<LikeIndex> likeIndex,
+                               @Value("${filmorate.likes.write-behind.durability:RELAXED}") Durability durability,
+                               @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                               @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize,
+                               @Value("${filmorate.likes.write-behind.capacity:50000}") int capacity) {
+        this.likesDAO = likesDAO;
+        this.leaderboard = leaderboard;
+        this.likeIndex = likeIndex;
+        this.durability = durability;
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "likes-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Включена отложенная запись лайков, durability = {}, интервал {} мс", durability, flushIntervalMs);
+    }
+
+    // Остановка фонового потока и запись оставшихся операций до закрытия DataSource
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        flusher.shutdown();
+        flusher.awaitTermination(STRICT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        flush();
+        log.info("Отложенная запись лайков остановлена");
+    }
+
+    @Override
+    public boolean addLike(long filmId, long userId) {
+        return enqueue(new FilmLike(filmId, userId), true);
+    }
+
+    @Override
+    public boolean removeLike(long filmId, long userId) {
+        return enqueue(new FilmLike(filmId, userId), false);
+    }
+
+    @Override
+    public boolean likeExist(long filmId, long userId) {
+        FilmLike like = new FilmLike(filmId, userId);
+        Boolean state = pending.get(like);
+        return state != null ? state : persistedState(like);
+    }
+
+    @Override
+    public List<Long> getFilmLikes(long filmId) {
+        Set<Long> users = new LinkedHashSet<>(likesDAO.getFilmLikes(filmId));
+        overlay(inFlight, filmId, users);
+        overlay(pending, filmId, users);
+        return new ArrayList<>(users);
+    }
+
+    @Override
+    public Map<Long, Integer> getAllLikesCount() {
+        Map<Long, Integer> likes = likesDAO.getAllLikesCount();
+        inFlight.forEach((like, liked) -> likes.merge(like.getFilmId(), liked ? 1 : -1, Integer::sum));
+        pending.forEach((like, liked) -> likes.merge(like.getFilmId(), liked ? 1 : -1, Integer::sum));
+        likes.values().removeIf(count -> count <= 0);
+        return likes;
+    }
+
+    // Лайки из БД без удаленных в очереди, затем добавленные в очереди. Лайк, запись которого идет параллельно,
+    // может быть передан дважды
+    @Override
+    public void forEachLike(Consumer<FilmLike> action) {
+        Map<FilmLike, Boolean> queued = new HashMap<>(inFlight);
+        queued.putAll(pending);
+
+        likesDAO.forEachLike(like -> {
+            if (!Boolean.FALSE.equals(queued.get(like))) {
+                action.accept(like);
+            }
+        });
+        queued.forEach((like, liked) -> {
+            if (liked) {
+                action.accept(like);
+            }
+        });
+    }
+
+    @Override
+    public List<Long> getTopFilms(int count) {
+        return likesDAO.getTopFilms(count);
+    }
+
+    @Override
+    public int recalculateLikesCount() {
+        return likesDAO.recalculateLikesCount();
+    }
+
+    // Запись накопленных операций в БД. Операции переносятся в inFlight под блокировкой своей пары,
+    // поэтому параллельный запрос по той же паре видит либо pending, либо inFlight, либо уже записанную БД
+    public synchronized void flush() {
+        flushRequested.set(false);
+        CompletableFuture<Void> flushed = nextFlush.getAndSet(new CompletableFuture<>());
+
+        for (FilmLike like : pending.keySet()) {
+            pending.computeIfPresent(like, (key, liked) -> {
+                inFlight.put(key, liked);
+                return null;
+            });
+        }
+
+        if (inFlight.isEmpty()) {
+            flushed.complete(null);
+            return;
+        }
+
+        List<FilmLike> added = new ArrayList<>();
+        List<FilmLike> removed = new ArrayList<>();
+        inFlight.forEach((like, liked) -> (liked ? added : removed).add(like));
+
+        List<FilmLike> skipped;
+        try {
+            skipped = likesDAO.saveLikes(added, removed);
+            flushes.incrementAndGet();
+            inFlight.clear();
+            flushed.complete(null);
+            log.debug("Записано лайков: {}, удалено лайков: {}", added.size(), removed.size());
+        } catch (RuntimeException e) {
+            requeue();
+            flushed.completeExceptionally(e);
+            log.error("Ошибка записи лайков, операции будут записаны повторно: {}", e.getMessage());
+            return;
+        }
+        removeSkipped(skipped);
+    }
+
+    public int getPendingCount() {
+        return pending.size() + inFlight.size();
+    }
+
+    // Новая операция над парой либо отменяет противоположную операцию в очереди, либо добавляется в очередь.
+    // Лайк, который уже есть, и удаление отсутствующего лайка отклоняются
+    // Запрос к БД выполняется до блокировки пары. Если пока он шел, завершилась запись в БД, состояние пары
+    // могло измениться, и оно читается заново
+    private boolean enqueue(FilmLike like, boolean liked) {
+        boolean[] accepted = new boolean[1];
+        boolean[] stale = new boolean[1];
+
+        do {
+            long flushed = flushes.get();
+            boolean persisted = persistedState(like);
+            stale[0] = false;
+
+            pending.compute(like, (key, queued) -> {
+                Boolean current = queued != null ? queued : inFlight.get(key);
+                if (current == null) {
+                    if (flushes.get() != flushed) {
+                        stale[0] = true;
+                        return null;
+                    }
+                    current = persisted;
+                }
+                if (current == liked) {
+                    return queued;
+                }
+
+                accepted[0] = true;
+                // Операция в очереди противоположна новой, вместе они ничего не меняют
+                return queued != null ? null : liked;
+            });
+        } while (stale[0]);
+
+        if (accepted[0]) {
+            waitIfNeeded();
+        }
+        return accepted[0];
+    }
+
+    // Состояние пары без учета очереди: запись в процессе или данные БД
+    private boolean persistedState(FilmLike like) {
+        Boolean state = inFlight.get(like);
+        return state != null ? state : likesDAO.likeExist(like.getFilmId(), like.getUserId());
+    }
+
+    // При STRICT запись запускается сразу: пока идет одна транзакция, операции других запросов копятся для следующей
+    private void waitIfNeeded() {
+        // Запись, которая включит операцию, берется до запуска записи. Иначе запись может успеть завершиться
+        // и ожидание перейдет на следующую
+        CompletableFuture<Void> flushed = nextFlush.get();
+        int size = pending.size();
+        boolean wait = durability == Durability.STRICT || size >= capacity;
+        if (wait || size >= batchSize || stopped) {
+            requestFlush();
+        }
+
+        if (wait) {
+            try {
+                flushed.get(STRICT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StorageException("Прервано ожидание записи лайка");
+            } catch (ExecutionException | TimeoutException e) {
+                throw new StorageException("Ошибка записи лайка в БД");
+            }
+        }
+    }
+
+    // Возврат операций после неудачной записи. Если по паре уже поставлена новая операция, она противоположна
+    // возвращаемой, и обе отменяются
+    private void requeue() {
+        for (FilmLike like : inFlight.keySet()) {
+            pending.compute(like, (key, queued) -> {
+                Boolean liked = inFlight.remove(key);
+                if (queued != null || liked == null) {
+                    return null;
+                }
+                return liked;
+            });
+        }
+    }
+
+    // Пропущенный лайк был учтен в рейтинге и индексе лайков при постановке в очередь. Удаления не корректируются:
+    // лайка в БД уже нет, как и после выполненного удаления
+    private void removeSkipped(List<FilmLike> skipped) {
+        if (skipped.isEmpty()) {
+            return;
+        }
+        log.warn("При записи пропущено лайков: {}", skipped.size());
+        try {
+            FilmLeaderboard films = leaderboard.getIfAvailable();
+            LikeIndex likes = likeIndex.getIfAvailable();
+            for (FilmLike like : skipped) {
+                if (films != null) {
+                    films.removeLike(like.getFilmId());
+                }
+                if (likes != null) {
+                    likes.removeLike(like.getFilmId(), like.getUserId());
+                }
+            }
+        } catch (RuntimeException e) {
+            // При остановке приложения рейтинг и индекс могут быть уже уничтожены
+            log.warn("Пропущенные лайки не убраны из рейтинга: {}", e.getMessage());
+        }
+    }
+
+    // Если фоновый поток уже остановлен, запись выполняется в потоке запроса
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flush();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка фоновой записи лайков", e);
+        }
+    }
+
+    private void overlay(Map<FilmLike, Boolean> operations, long filmId, Set<Long> users) {
+        operations.forEach((like, liked) -> {
+            if (like.getFilmId() == filmId) {
+                if (liked) {
+                    users.add(like.getUserId());
+                } else {
+                    users.remove(like.getUserId());
+                }
+            }
+        });
+    }
+
+    public enum Durability {
+        RELAXED,
+        STRICT
+    }
+}
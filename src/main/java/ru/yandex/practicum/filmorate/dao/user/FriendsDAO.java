@@ -1,22 +1,32 @@
 package ru.yandex.practicum.filmorate.dao.user;
 
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.StreamingQuery;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * DAO реализация для работы с таблицей user_friends
  */
 @Component
 public class FriendsDAO implements FriendshipDAO {
+    private static final int FETCH_SIZE = 10_000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
 
-    public FriendsDAO(JdbcTemplate jdbcTemplate) {
+    public FriendsDAO(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
     }
 
     @Override
@@ -32,6 +42,32 @@ public class FriendsDAO implements FriendshipDAO {
         }, userId);
     }
 
+    // Друзья сразу для набора пользователей одним запросом, ключ - id пользователя
+    @Override
+    public Map<Long, Map<Long, Boolean>> getFriends(Collection<Long> usersId) {
+        if (usersId.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        String sql = "SELECT user_id, friend_id, status FROM user_friends WHERE user_id IN (:ids)";
+        return namedJdbcTemplate.query(sql, Map.of("ids", usersId), this::friendsByUser);
+    }
+
+    @Override
+    public Map<Long, Map<Long, Boolean>> getAllFriends() {
+        String sql = "SELECT user_id, friend_id, status FROM user_friends";
+        return jdbcTemplate.query(sql, this::friendsByUser);
+    }
+
+    // Все дружбы по возрастанию (user_id, friend_id) по одной по мере чтения, порядок первичного ключа
+    @Override
+    public void forEachFriendship(Consumer<Friendship> action) {
+        String sql = "SELECT user_id, friend_id, status FROM user_friends ORDER BY user_id, friend_id";
+        StreamingQuery.query(jdbcTemplate, sql, FETCH_SIZE, (ResultSet rs) -> {
+            action.accept(new Friendship(rs.getLong("user_id"), rs.getLong("friend_id"), rs.getBoolean("status")));
+        });
+    }
+
     @Override
     public boolean addFriend(long userId, long friendId) {
         SimpleJdbcInsert insert = new SimpleJdbcInsert(jdbcTemplate)
@@ -73,4 +109,15 @@ public class FriendsDAO implements FriendshipDAO {
 
         return false;
     }
+
+    private Map<Long, Map<Long, Boolean>> friendsByUser(ResultSet rs) throws SQLException {
+        Map<Long, Map<Long, Boolean>> friends = new HashMap<>();
+
+        while (rs.next()) {
+            friends.computeIfAbsent(rs.getLong("user_id"), id -> new HashMap<>())
+                    .put(rs.getLong("friend_id"), rs.getBoolean("status"));
+        }
+
+        return friends;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dao.user;
+
+import lombok.Data;
+
+/**
+ * Дружба пользователя с другом и ее статус - одна строка таблицы user_friends
+ */
+@Data
+public class Friendship {
+    private final long userId;
+    private final long friendId;
+    private final boolean status;
+}
@@ -1,11 +1,19 @@
 package ru.yandex.practicum.filmorate.dao.user;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface FriendshipDAO {
     Map<Long, Boolean> getFriends(long userId);
 
+    Map<Long, Map<Long, Boolean>> getFriends(Collection<Long> usersId);
+
+    Map<Long, Map<Long, Boolean>> getAllFriends();
+
+    void forEachFriendship(Consumer<Friendship> action);
+
     boolean addFriend(long userId, long friendId);
 
     boolean removeFriend(long userId, long friendId);
@@ -1,20 +1,31 @@
 package ru.yandex.practicum.filmorate.dao.user;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 import ru.yandex.practicum.filmorate.util.StorageException;
+import ru.yandex.practicum.filmorate.util.StreamingQuery;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * DAO класс для работы с таблицей users БД
@@ -24,22 +35,42 @@ import java.util.Optional;
 @Primary
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
     private final FriendshipDAO friendshipDAO;
+    private final int exportFetchSize;
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate, FriendshipDAO friendshipDAO) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                         FriendshipDAO friendshipDAO, @Value("${filmorate.export.fetch-size:500}") int exportFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
         this.friendshipDAO = friendshipDAO;
+        this.exportFetchSize = exportFetchSize;
     }
 
-    // Создание пользователя в БД
+    // Создание пользователя в БД одним INSERT. Ответ собирается из переданного пользователя и полученного id,
+    // у нового пользователя еще нет друзей, поэтому повторное чтение из БД не нужно
     @Override
     public Optional<User> createUser(User user) {
-        SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("users")
-                .usingGeneratedKeyColumns("user_id");
-        long userId = (simpleJdbcInsert.executeAndReturnKey(userToMap(user)).longValue());
-        return getUser(userId);
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+
+        if (user == null) {
+            throw new StorageException("Получен null для сохранения");
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, new String[]{"user_id"});
+            ps.setString(1, user.getEmail());
+            ps.setString(2, user.getLogin());
+            ps.setString(3, user.getName());
+            ps.setDate(4, user.getBirthday() == null ? null : Date.valueOf(user.getBirthday()));
+            return ps;
+        }, keyHolder);
+
+        User created = new User(user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
+        created.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        return Optional.of(created);
     }
 
     // Обновление данных о пользователе. id, login являются не изменяемыми.
@@ -73,14 +104,42 @@ public class UserDbStorage implements UserStorage {
         if (users.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.ofNullable(users.get(0));
+        return Optional.of(fillFriends(users, Map.of(userId, friendshipDAO.getFriends(userId))).get(0));
+    }
+
+    // Получение пользователей по набору id одним запросом, пользователи упорядочены по id
+    @Override
+    public List<User> getUsers(Collection<Long> usersId) {
+        if (usersId.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String sql = "SELECT * FROM users WHERE user_id IN (:ids) ORDER BY user_id";
+        List<User> users = namedJdbcTemplate.query(sql, Map.of("ids", usersId), (rs, rowNum) -> createUserFromDb(rs));
+        return fillFriends(users, friendshipDAO.getFriends(usersId));
     }
 
     // Получение списка всех пользователей
     @Override
     public List<User> getAllUsers() {
-        String sql = "SELECT * FROM users";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> createUserFromDb(rs));
+        String sql = "SELECT * FROM users ORDER BY user_id";
+        List<User> users = jdbcTemplate.query(sql, (rs, rowNum) -> createUserFromDb(rs));
+        return fillFriends(users, friendshipDAO.getAllFriends());
+    }
+
+    // Страница пользователей по первичному ключу, стоимость не зависит от номера страницы
+    @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        List<User> users = jdbcTemplate.query(sql, (rs, rowNum) -> createUserFromDb(rs), afterId, limit);
+        if (users.isEmpty()) {
+            return users;
+        }
+
+        List<Long> usersId = users.stream()
+                .map(User::getId)
+                .collect(Collectors.toList());
+        return fillFriends(users, friendshipDAO.getFriends(usersId));
     }
 
     // Проверка наличия записи о пользователе. Нужна для проставления лайков фильму.
@@ -90,34 +149,54 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.queryForRowSet(sql, id).next();
     }
 
-    // Создание User из ResultSet полученного из БД
+    // Обход всех пользователей без загрузки таблицы в память: ResultSet читается порциями по exportFetchSize строк,
+    // строки одного пользователя идут подряд и собираются в один User вместе с друзьями
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        String sql = "SELECT u.*, uf.friend_id, uf.status FROM users AS u " +
+                "LEFT JOIN user_friends AS uf ON u.user_id = uf.user_id ORDER BY u.user_id";
+
+        StreamingQuery.query(jdbcTemplate, sql, exportFetchSize, (ResultSet rs) -> {
+            User user = null;
+            Map<Long, Boolean> friends = new HashMap<>();
+            while (rs.next()) {
+                if (user == null || user.getId() != rs.getLong("user_id")) {
+                    if (user != null) {
+                        user.addFriends(friends);
+                        action.accept(user);
+                        friends.clear();
+                    }
+                    user = createUserFromDb(rs);
+                }
+
+                long friendId = rs.getLong("friend_id");
+                if (!rs.wasNull()) {
+                    friends.put(friendId, rs.getBoolean("status"));
+                }
+            }
+            if (user != null) {
+                user.addFriends(friends);
+                action.accept(user);
+            }
+            return null;
+        });
+    }
+
+    // Создание User из ResultSet полученного из БД, друзья заполняются отдельно в fillFriends
     private User createUserFromDb(ResultSet rs) throws SQLException {
         User user = new User(rs.getString("email"),
                 rs.getString("login"),
                 rs.getString("name"),
                 rs.getDate("birthday").toLocalDate());
-        user.setId(rs.getInt("user_id"));
-
-        // Заполняем список друзей пользователя и статус дружбы
-        Map<Long, Boolean> friends = friendshipDAO.getFriends(user.getId());
-        for (Long id : friends.keySet()) {
-            user.addFriend(id, friends.get(id));
-        }
-
+        user.setId(rs.getLong("user_id"));
         return user;
     }
 
-    // Преобразование User в Map<> для использования в SimpleJdbcInsert
-    private Map<String, Object> userToMap(User user) {
-        if (user == null) {
-            throw new StorageException("Получен null для сохранения");
+    // Заполняем список друзей пользователей и статус дружбы
+    private List<User> fillFriends(List<User> users, Map<Long, Map<Long, Boolean>> friends) {
+        for (User user : users) {
+            user.addFriends(friends.getOrDefault(user.getId(), Map.of()));
         }
-
-        Map<String, Object> userMap = new HashMap<>();
-        userMap.put("email", user.getEmail());
-        userMap.put("login", user.getLogin());
-        userMap.put("name", user.getName());
-        userMap.put("birthday", user.getBirthday());
-        return userMap;
+        return users;
     }
 }
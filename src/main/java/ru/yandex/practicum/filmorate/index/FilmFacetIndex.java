@@ -0,0 +1,272 @@
+package ru.yandex.practicum.filmorate.index;
+
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Индекс каталога фильмов: множества id фильмов IdBitmap по жанрам, рейтингам MPA и годам выпуска,
+ * годы упорядочены, диапазон лет - объединение множеств подряд идущих лет.
+ * Фильтр вычисляется объединением и пересечением множеств, число фильмов по значениям фильтров - размером
+ * пересечений без построения самих пересечений.
+ * Множества неизменяемые, изменение фильма собирает новое состояние и заменяет текущее одной записью,
+ * поэтому запрос видит согласованное состояние без блокировок
+ */
+public class FilmFacetIndex {
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private volatile State state = State.EMPTY;
+
+    // Добавление или замена фильма. mpaId может быть null
+    public synchronized void put(long filmId, Collection<Integer> genres, Integer mpaId, LocalDate releaseDate) {
+        Entry entry = new Entry(genres.stream().mapToInt(Integer::intValue).distinct().toArray(), mpaId,
+                releaseDate.getYear());
+        apply(toIndex(filmId), entries.put(filmId, entry), entry);
+    }
+
+    public synchronized void remove(long filmId) {
+        Entry previous = entries.remove(filmId);
+        if (previous != null) {
+            apply(toIndex(filmId), previous, null);
+        }
+    }
+
+    // Загрузка всех фильмов: множества строятся из неупорядоченных id и заменяют текущие целиком
+    public synchronized void load(Loader loader) {
+        Map<Integer, IdBitmap.Builder> genres = new HashMap<>();
+        Map<Integer, IdBitmap.Builder> mpa = new HashMap<>();
+        Map<Integer, IdBitmap.Builder> years = new HashMap<>();
+        IdBitmap.Builder all = new IdBitmap.Builder();
+
+        loader.entries.forEach((filmId, entry) -> {
+            int film = toIndex(filmId);
+            all.add(film);
+            for (int genreId : entry.genres) {
+                genres.computeIfAbsent(genreId, id -> new IdBitmap.Builder()).add(film);
+            }
+            if (entry.mpaId != null) {
+                mpa.computeIfAbsent(entry.mpaId, id -> new IdBitmap.Builder()).add(film);
+            }
+            years.computeIfAbsent(entry.year, id -> new IdBitmap.Builder()).add(film);
+        });
+
+        entries.clear();
+        entries.putAll(loader.entries);
+        state = new State(build(genres, new HashMap<>()), build(mpa, new HashMap<>()), build(years, new TreeMap<>()),
+                all.build());
+    }
+
+    public int size() {
+        return state.all.cardinality();
+    }
+
+    public Result filter(FilmFilter filter) {
+        State current = state;
+        IdBitmap genres = union(current.genres, filter.getGenres());
+        IdBitmap mpa = union(current.mpa, filter.getMpa());
+        IdBitmap years = null;
+        if (filter.getYearFrom() != null || filter.getYearTo() != null) {
+            int from = filter.getYearFrom() != null ? filter.getYearFrom() : Integer.MIN_VALUE;
+            int to = filter.getYearTo() != null ? filter.getYearTo() : Integer.MAX_VALUE;
+            years = from > to ? IdBitmap.EMPTY : union(current.years.subMap(from, true, to, true).values());
+        }
+
+        IdBitmap films = intersect(current.all, genres, mpa, years);
+        FilmCatalog.Facets facets = new FilmCatalog.Facets(
+                counts(current.genres, intersect(current.all, mpa, years)),
+                counts(current.mpa, intersect(current.all, genres, years)),
+                counts(current.years, intersect(current.all, genres, mpa)));
+        return new Result(films, facets);
+    }
+
+    // Не больше count id из films: по возрастанию id или, если задано число лайков, по убыванию лайков
+    // и возрастанию id
+    public static long[] select(IdBitmap films, int count, LongToIntFunction likes) {
+        if (likes == null) {
+            return Arrays.stream(films.first(count)).asLongStream().toArray();
+        }
+
+        TopK top = new TopK(count);
+        films.forEach(id -> top.offer(id, likes.applyAsInt(id)));
+        return top.toArray();
+    }
+
+    // Новое состояние: фильм убирается из множеств прежних значений и добавляется в множества новых.
+    // Копируются только словари значений, множества неизменяемые и разделяются с текущим состоянием
+    private void apply(int film, Entry previous, Entry entry) {
+        State current = state;
+        Map<Integer, IdBitmap> genres = new HashMap<>(current.genres);
+        Map<Integer, IdBitmap> mpa = new HashMap<>(current.mpa);
+        NavigableMap<Integer, IdBitmap> years = new TreeMap<>(current.years);
+        IdBitmap all = current.all;
+
+        if (previous != null) {
+            for (int genreId : previous.genres) {
+                remove(genres, genreId, film);
+            }
+            if (previous.mpaId != null) {
+                remove(mpa, previous.mpaId, film);
+            }
+            remove(years, previous.year, film);
+            all = all.without(film);
+        }
+        if (entry != null) {
+            for (int genreId : entry.genres) {
+                add(genres, genreId, film);
+            }
+            if (entry.mpaId != null) {
+                add(mpa, entry.mpaId, film);
+            }
+            add(years, entry.year, film);
+            all = all.with(film);
+        }
+        state = new State(genres, mpa, years, all);
+    }
+
+    private static void add(Map<Integer, IdBitmap> bitmaps, int value, int film) {
+        bitmaps.compute(value, (key, films) -> (films == null ? IdBitmap.EMPTY : films).with(film));
+    }
+
+    private static void remove(Map<Integer, IdBitmap> bitmaps, int value, int film) {
+        bitmaps.computeIfPresent(value, (key, films) -> {
+            IdBitmap result = films.without(film);
+            return result.isEmpty() ? null : result;
+        });
+    }
+
+    // Объединение множеств выбранных значений, null - фильтр не задан
+    private static IdBitmap union(Map<Integer, IdBitmap> bitmaps, Set<Integer> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        IdBitmap result = IdBitmap.EMPTY;
+        for (Integer value : values) {
+            result = result.or(bitmaps.getOrDefault(value, IdBitmap.EMPTY));
+        }
+        return result;
+    }
+
+    private static IdBitmap union(Collection<IdBitmap> bitmaps) {
+        IdBitmap result = IdBitmap.EMPTY;
+        for (IdBitmap bitmap : bitmaps) {
+            result = result.or(bitmap);
+        }
+        return result;
+    }
+
+    // Пересечение заданных фильтров, незаданные (null) пропускаются. Без фильтров - все фильмы
+    private static IdBitmap intersect(IdBitmap all, IdBitmap... filters) {
+        IdBitmap result = null;
+        for (IdBitmap filter : filters) {
+            if (filter != null) {
+                result = result == null ? filter : result.and(filter);
+            }
+        }
+        return result == null ? all : result;
+    }
+
+    // Число фильмов по каждому значению среди base, значения без фильмов не попадают в результат
+    private static Map<Integer, Integer> counts(Map<Integer, IdBitmap> bitmaps, IdBitmap base) {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        bitmaps.forEach((value, films) -> {
+            int count = films.andCardinality(base);
+            if (count > 0) {
+                counts.put(value, count);
+            }
+        });
+        return counts;
+    }
+
+    private static <M extends Map<Integer, IdBitmap>> M build(Map<Integer, IdBitmap.Builder> builders, M result) {
+        builders.forEach((value, builder) -> result.put(value, builder.build()));
+        return result;
+    }
+
+    // Индекс хранит id как int, id за пределами int в приложении не выдаются
+    private static int toIndex(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("id вне диапазона индекса каталога: " + id);
+        }
+        return (int) id;
+    }
+
+    /**
+     * Подходящие под фильтр фильмы и число фильмов по значениям фильтров
+     */
+    public static final class Result {
+        private final IdBitmap films;
+        private final FilmCatalog.Facets facets;
+
+        private Result(IdBitmap films, FilmCatalog.Facets facets) {
+            this.films = films;
+            this.facets = facets;
+        }
+
+        public IdBitmap getFilms() {
+            return films;
+        }
+
+        public FilmCatalog.Facets getFacets() {
+            return facets;
+        }
+    }
+
+    /**
+     * Фильмы для загрузки индекса. Жанры добавляются отдельно, фильм к этому моменту уже должен быть добавлен
+     */
+    public static final class Loader {
+        private final Map<Long, Entry> entries = new HashMap<>();
+
+        public void addFilm(long filmId, Integer mpaId, LocalDate releaseDate) {
+            entries.put(filmId, new Entry(new int[0], mpaId, releaseDate.getYear()));
+        }
+
+        public void addGenre(long filmId, int genreId) {
+            Entry entry = entries.get(filmId);
+            if (entry != null) {
+                int[] genres = Arrays.copyOf(entry.genres, entry.genres.length + 1);
+                genres[entry.genres.length] = genreId;
+                entries.put(filmId, new Entry(genres, entry.mpaId, entry.year));
+            }
+        }
+    }
+
+    // Значения фильтров фильма, нужны для удаления фильма из множеств при изменении
+    private static final class Entry {
+        private final int[] genres;
+        private final Integer mpaId;
+        private final int year;
+
+        private Entry(int[] genres, Integer mpaId, int year) {
+            this.genres = genres;
+            this.mpaId = mpaId;
+            this.year = year;
+        }
+    }
+
+    private static final class State {
+        private static final State EMPTY = new State(Map.of(), Map.of(), new TreeMap<>(), IdBitmap.EMPTY);
+
+        private final Map<Integer, IdBitmap> genres;
+        private final Map<Integer, IdBitmap> mpa;
+        private final NavigableMap<Integer, IdBitmap> years;
+        private final IdBitmap all;
+
+        private State(Map<Integer, IdBitmap> genres, Map<Integer, IdBitmap> mpa, NavigableMap<Integer, IdBitmap> years,
+                      IdBitmap all) {
+            this.genres = genres;
+            this.mpa = mpa;
+            this.years = years;
+            this.all = all;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.film.LikesDAO;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Рейтинг популярности фильмов в памяти приложения.
+ * Хранит фильмы с лайками, упорядоченные по (количество лайков по убыванию, id фильма).
+ * Заполняется при старте из film_likes и обновляется при каждом добавлении/удалении лайка
+ */
+@Component
+@Slf4j
+public class FilmLeaderboard {
+    private final LikesDAO likesDAO;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Entry> ranking = new ConcurrentSkipListSet<>();
+
+    @Autowired
+    public FilmLeaderboard(LikesDAO likesDAO) {
+        this.likesDAO = likesDAO;
+    }
+
+    // Загрузка рейтинга из film_likes
+    @PostConstruct
+    public void load() {
+        entries.clear();
+        ranking.clear();
+
+        likesDAO.getAllLikesCount().forEach((filmId, likes) -> change(filmId, likes));
+        log.info("Рейтинг популярности загружен, фильмов с лайками: {}", entries.size());
+    }
+
+    public void addLike(long filmId) {
+        change(filmId, 1);
+    }
+
+    public void removeLike(long filmId) {
+        change(filmId, -1);
+    }
+
+    public void removeFilm(long filmId) {
+        entries.computeIfPresent(filmId, (id, prev) -> {
+            ranking.remove(prev);
+            return null;
+        });
+    }
+
+    // Сверка рейтинга с числом лайков likes, возвращает количество исправленных фильмов. Лайк, поставленный
+    // во время сверки, может быть перезаписан прочитанным до него значением, такое расхождение исправит следующая сверка
+    public int reconcile(Map<Long, Integer> likes) {
+        Set<Long> filmsId = new HashSet<>(entries.keySet());
+        filmsId.addAll(likes.keySet());
+        int[] fixed = new int[1];
+
+        for (long filmId : filmsId) {
+            int expected = likes.getOrDefault(filmId, 0);
+            update(filmId, current -> {
+                if (current != expected) {
+                    fixed[0]++;
+                }
+                return expected;
+            });
+        }
+        return fixed[0];
+    }
+
+    public int getLikes(long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry == null ? 0 : entry.likes;
+    }
+
+    // id count самых популярных фильмов. Фильмы без лайков в рейтинг не попадают
+    public List<Long> getTopFilms(int count) {
+        // Во время обновления фильм может кратко присутствовать в рейтинге дважды, поэтому убираем повторы
+        Set<Long> filmsId = new LinkedHashSet<>();
+
+        for (Entry entry : ranking) {
+            if (filmsId.size() >= count) {
+                break;
+            }
+            filmsId.add(entry.filmId);
+        }
+
+        return new ArrayList<>(filmsId);
+    }
+
+    // Изменения одного фильма выполняются атомарно внутри compute, новая запись добавляется до удаления старой,
+    // чтобы читатели рейтинга не теряли фильм во время обновления
+    private void change(long filmId, int delta) {
+        update(filmId, likes -> likes + delta);
+    }
+
+    private void update(long filmId, IntUnaryOperator operator) {
+        entries.compute(filmId, (id, prev) -> {
+            int likes = operator.applyAsInt(prev == null ? 0 : prev.likes);
+            if (prev != null && prev.likes == likes) {
+                return prev;
+            }
+            Entry next = likes > 0 ? new Entry(likes, id) : null;
+
+            if (next != null) {
+                ranking.add(next);
+            }
+            if (prev != null) {
+                ranking.remove(prev);
+            }
+
+            return next;
+        });
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final int likes;
+        private final long filmId;
+
+        private Entry(int likes, long filmId) {
+            this.likes = likes;
+            this.filmId = filmId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byLikes = Integer.compare(other.likes, likes);
+            return byLikes != 0 ? byLikes : Long.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return likes == entry.likes && filmId == entry.filmId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(filmId) + likes;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Полнотекстовый поиск фильмов по названию и описанию: инвертированный индекс слово -> фильмы
+ * с числом вхождений, ранжирование по BM25. Слово запроса совпадает со словом фильма целиком или как префикс,
+ * если таких слов нет - по общим триграммам, что находит слова с опечатками.
+ * Слова - последовательности букв и цифр любого алфавита в нижнем регистре, ё заменяется на е.
+ * Изменения выполняются по одному фильму под блокировкой, поиск не блокируется
+ * и может увидеть фильм, изменение которого еще не закончено
+ */
+public class FilmSearchIndex {
+    // Вхождение слова в название весит как NAME_WEIGHT вхождений в описание
+    private static final int NAME_WEIGHT = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.7;
+    private static final double NGRAM_WEIGHT = 0.5;
+    // Минимальная доля общих триграмм (мера Жаккара) для совпадения с опечаткой
+    private static final double NGRAM_THRESHOLD = 0.4;
+    private static final int NGRAM_MIN_LENGTH = 4;
+    private static final int MAX_QUERY_TERMS = 10;
+    // Слов фильмов на одно слово запроса при поиске по префиксу и триграммам
+    private static final int MAX_EXPANSIONS = 50;
+
+    private final ConcurrentNavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> termsByGram = new ConcurrentHashMap<>();
+    private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+    private volatile long totalLength;
+
+    // Добавление или замена фильма
+    public synchronized void put(long filmId, String name, String description) {
+        remove(filmId);
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : tokenize(name)) {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(description)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        if (frequencies.isEmpty()) {
+            return;
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            String term = entry.getKey();
+            postings.computeIfAbsent(term, key -> {
+                grams(term).forEach(gram -> termsByGram.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet())
+                        .add(term));
+                return new ConcurrentHashMap<>();
+            }).put(filmId, entry.getValue());
+            length += entry.getValue();
+        }
+        documents.put(filmId, new Document(frequencies.keySet().toArray(new String[0]), length));
+        totalLength += length;
+    }
+
+    public synchronized void remove(long filmId) {
+        Document document = documents.remove(filmId);
+        if (document == null) {
+            return;
+        }
+
+        for (String term : document.terms) {
+            Map<Long, Integer> films = postings.get(term);
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                postings.remove(term);
+                for (String gram : grams(term)) {
+                    Set<String> terms = termsByGram.get(gram);
+                    terms.remove(term);
+                    if (terms.isEmpty()) {
+                        termsByGram.remove(gram);
+                    }
+                }
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        termsByGram.clear();
+        documents.clear();
+        totalLength = 0;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    // id не больше limit фильмов по убыванию релевантности, при равенстве по возрастанию id
+    public long[] search(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        int count = documents.size();
+        if (queryTerms.isEmpty() || count == 0) {
+            return new long[0];
+        }
+        double averageLength = Math.max(1.0, (double) totalLength / count);
+
+        Map<Long, double[]> scores = new HashMap<>();
+        for (String queryTerm : queryTerms.subList(0, Math.min(queryTerms.size(), MAX_QUERY_TERMS))) {
+            for (Map.Entry<String, Double> match : matches(queryTerm).entrySet()) {
+                Map<Long, Integer> films = postings.get(match.getKey());
+                if (films == null) {
+                    continue;
+                }
+                int frequency = films.size();
+                double idf = Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5));
+
+                for (Map.Entry<Long, Integer> posting : films.entrySet()) {
+                    Document document = documents.get(posting.getKey());
+                    if (document == null) {
+                        continue;
+                    }
+                    int tf = posting.getValue();
+                    double norm = K1 * (1 - B + B * document.length / averageLength);
+                    scores.computeIfAbsent(posting.getKey(), id -> new double[1])[0] +=
+                            match.getValue() * idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+        }
+
+        return top(scores, limit);
+    }
+
+    // Слова в нижнем регистре в порядке появления в тексте
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                terms.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    // Слова индекса, подходящие к слову запроса, с весом совпадения
+    private Map<String, Double> matches(String queryTerm) {
+        Map<String, Double> matches = new HashMap<>();
+        if (postings.containsKey(queryTerm)) {
+            matches.put(queryTerm, 1.0);
+        }
+        for (String term : postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).keySet()) {
+            if (matches.size() >= MAX_EXPANSIONS) {
+                break;
+            }
+            matches.put(term, PREFIX_WEIGHT);
+        }
+        if (matches.isEmpty() && queryTerm.length() >= NGRAM_MIN_LENGTH) {
+            similarTerms(queryTerm, matches);
+        }
+        return matches;
+    }
+
+    // Слова с долей общих триграмм не меньше NGRAM_THRESHOLD, вес пропорционален доле
+    private void similarTerms(String queryTerm, Map<String, Double> matches) {
+        Set<String> queryGrams = grams(queryTerm);
+        Map<String, int[]> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<String> terms = termsByGram.get(gram);
+            if (terms != null) {
+                terms.forEach(term -> shared.computeIfAbsent(term, key -> new int[1])[0]++);
+            }
+        }
+
+        PriorityQueue<Map.Entry<String, Double>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<String, int[]> entry : shared.entrySet()) {
+            int common = entry.getValue()[0];
+            double similarity = (double) common / (queryGrams.size() + grams(entry.getKey()).size() - common);
+            if (similarity >= NGRAM_THRESHOLD) {
+                heap.add(Map.entry(entry.getKey(), similarity));
+                if (heap.size() > MAX_EXPANSIONS) {
+                    heap.poll();
+                }
+            }
+        }
+        heap.forEach(entry -> matches.put(entry.getKey(), NGRAM_WEIGHT * entry.getValue()));
+    }
+
+    // Триграммы слова с границами: "кот" -> " ко", "кот", "от "
+    private static Set<String> grams(String term) {
+        String padded = " " + term + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static long[] top(Map<Long, double[]> scores, int limit) {
+        TopK top = new TopK(limit);
+        scores.forEach((filmId, score) -> top.offer(filmId, score[0]));
+        return top.toArray();
+    }
+
+    // Слова фильма для удаления из индекса и длина текста с учетом веса названия
+    private static final class Document {
+        private final String[] terms;
+        private final int length;
+
+        private Document(String[] terms, int length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Похожие фильмы для рекомендаций item-item по лайкам. Сходство двух фильмов - косинусная мера множеств
+ * лайкнувших пользователей из индекса лайков: |A ∩ B| / sqrt(|A| * |B|). Для каждого фильма хранятся
+ * только topK самых похожих фильмов в формате CSR: id фильмов, смещения строк, id соседей и их сходство.
+ * Матрица строится параллельно в ForkJoinPool при старте и периодически в фоне, новая заменяет текущую одной записью.
+ * Фильмы, у которых менялись лайки, пересчитываются чаще и хранятся поверх CSR до следующего полного построения
+ */
+@Component
+@Slf4j
+public class FilmSimilarityIndex {
+    // Фильмов в одной подзадаче ForkJoinPool
+    private static final int BATCH_SIZE = 64;
+
+    private final LikeIndex likeIndex;
+    private final int topK;
+    private final int maxLikers;
+    private final int maxUserLikes;
+    private final ForkJoinPool pool;
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private volatile Matrix matrix = new Matrix(Csr.EMPTY, Map.of());
+
+    @Autowired
+    public FilmSimilarityIndex(LikeIndex likeIndex,
+                               @Value("${filmorate.films.similarity.top-k:50}") int topK,
+                               @Value("${filmorate.films.similarity.max-likers:1000}") int maxLikers,
+                               @Value("${filmorate.films.similarity.max-user-likes:500}") int maxUserLikes,
+                               @Value("${filmorate.films.similarity.parallelism:0}") int parallelism) {
+        this.likeIndex = likeIndex;
+        this.topK = topK;
+        this.maxLikers = maxLikers;
+        this.maxUserLikes = maxUserLikes;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PostConstruct
+    public void load() {
+        rebuild();
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Полное построение матрицы по всем фильмам с лайками
+    @Scheduled(fixedDelayString = "${filmorate.films.similarity.rebuild-interval-ms:3600000}",
+            initialDelayString = "${filmorate.films.similarity.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        long[] films = likeIndex.getLikedFilms();
+        Row[] rows = computeRows(films);
+
+        int[] offsets = new int[films.length + 1];
+        for (int i = 0; i < films.length; i++) {
+            offsets[i + 1] = offsets[i] + rows[i].size();
+        }
+        int[] neighbors = new int[offsets[films.length]];
+        float[] scores = new float[neighbors.length];
+        for (int i = 0; i < films.length; i++) {
+            System.arraycopy(rows[i].neighbors, 0, neighbors, offsets[i], rows[i].size());
+            System.arraycopy(rows[i].scores, 0, scores, offsets[i], rows[i].size());
+        }
+
+        // Изменения, накопленные во время построения, пересчитает следующий refresh
+        matrix = new Matrix(new Csr(films, offsets, neighbors, scores), Map.of());
+        log.info("Матрица похожих фильмов построена за {} мс, фильмов: {}, соседей: {}",
+                System.currentTimeMillis() - start, films.length, neighbors.length);
+    }
+
+    // Пересчет строк фильмов, у которых менялись лайки с прошлого пересчета
+    @Scheduled(fixedDelayString = "${filmorate.films.similarity.refresh-interval-ms:10000}")
+    public synchronized void refresh() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        long[] films = drainChanged();
+        Row[] rows = computeRows(films);
+
+        Map<Long, Row> overrides = new HashMap<>(matrix.overrides);
+        for (int i = 0; i < films.length; i++) {
+            overrides.put(films[i], rows[i]);
+        }
+        matrix = new Matrix(matrix.csr, overrides);
+        log.debug("Пересчитаны похожие фильмы для {} фильмов", films.length);
+    }
+
+    // Отметка фильма, у которого изменились лайки
+    public void markChanged(long filmId) {
+        changed.add(filmId);
+    }
+
+    // id не больше count фильмов, похожих на понравившиеся пользователю, которые он еще не лайкнул.
+    // Оценка фильма - сумма сходства с понравившимися фильмами
+    public long[] recommend(long userId, int count) {
+        IdBitmap liked = likeIndex.getUserLikes(userId);
+        Matrix current = matrix;
+        Map<Integer, float[]> scores = new HashMap<>();
+
+        for (int filmId : sample(liked, maxUserLikes)) {
+            Row row = current.row(filmId);
+            for (int i = row.from; i < row.to; i++) {
+                if (!liked.contains(row.neighbors[i])) {
+                    scores.computeIfAbsent(row.neighbors[i], id -> new float[1])[0] += row.scores[i];
+                }
+            }
+        }
+
+        TopK top = new TopK(count);
+        scores.forEach((filmId, score) -> top.offer(filmId, score[0]));
+        return top.toArray();
+    }
+
+    // Похожие фильмы по убыванию сходства
+    public long[] getSimilarFilms(long filmId) {
+        Row row = matrix.row(filmId);
+        long[] result = new long[row.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = row.neighbors[row.from + i];
+        }
+        return result;
+    }
+
+    // Отмеченные фильмы, отметки снимаются. Отмеченные во время пересчета попадут в следующий
+    private long[] drainChanged() {
+        List<Long> films = new ArrayList<>();
+        for (Iterator<Long> iterator = changed.iterator(); iterator.hasNext(); ) {
+            films.add(iterator.next());
+            iterator.remove();
+        }
+        return films.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private Row[] computeRows(long[] films) {
+        Row[] rows = new Row[films.length];
+        pool.invoke(new RowsTask(films, rows, 0, films.length));
+        return rows;
+    }
+
+    // Строка фильма: кандидаты - фильмы, которые лайкали лайкнувшие его пользователи (не больше maxLikers из них),
+    // сходство с каждым кандидатом считается точно пересечением битовых карт
+    private Row computeRow(long filmId) {
+        IdBitmap likers = likeIndex.getFilmLikes(filmId);
+        if (likers.isEmpty()) {
+            return Row.EMPTY;
+        }
+
+        int film = (int) filmId;
+        Set<Integer> candidates = new HashSet<>();
+        for (int userId : sample(likers, maxLikers)) {
+            for (int candidate : sample(likeIndex.getUserLikes(userId), maxUserLikes)) {
+                if (candidate != film) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+
+        PriorityQueue<Neighbor> heap = new PriorityQueue<>(topK + 1);
+        for (int candidate : candidates) {
+            IdBitmap candidateLikers = likeIndex.getFilmLikes(candidate);
+            int common = likers.andCardinality(candidateLikers);
+            if (common > 0) {
+                heap.add(new Neighbor(candidate,
+                        (float) (common / Math.sqrt((double) likers.cardinality() * candidateLikers.cardinality()))));
+                if (heap.size() > topK) {
+                    heap.poll();
+                }
+            }
+        }
+
+        int[] neighbors = new int[heap.size()];
+        float[] scores = new float[heap.size()];
+        for (int i = neighbors.length - 1; i >= 0; i--) {
+            Neighbor neighbor = heap.poll();
+            neighbors[i] = neighbor.filmId;
+            scores[i] = neighbor.score;
+        }
+        return new Row(neighbors, scores, 0, neighbors.length);
+    }
+
+    // Не больше limit значений, взятых с равным шагом
+    private static int[] sample(IdBitmap bitmap, int limit) {
+        int[] values = bitmap.toArray();
+        if (values.length <= limit) {
+            return values;
+        }
+        int[] sample = new int[limit];
+        for (int i = 0; i < limit; i++) {
+            sample[i] = values[(int) ((long) i * values.length / limit)];
+        }
+        return sample;
+    }
+
+    private final class RowsTask extends RecursiveAction {
+        // RecursiveAction реализует Serializable, сама задача не сериализуется
+        private static final long serialVersionUID = 1L;
+
+        private final long[] films;
+        private final Row[] rows;
+        private final int from;
+        private final int to;
+
+        private RowsTask(long[] films, Row[] rows, int from, int to) {
+            this.films = films;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    rows[i] = computeRow(films[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowsTask(films, rows, from, middle), new RowsTask(films, rows, middle, to));
+        }
+    }
+
+    // Сосед фильма. В корне кучи худший из отобранных: меньшее сходство, при равенстве больший id
+    private static final class Neighbor implements Comparable<Neighbor> {
+        private final int filmId;
+        private final float score;
+
+        private Neighbor(int filmId, float score) {
+            this.filmId = filmId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Neighbor other) {
+            int byScore = Float.compare(score, other.score);
+            return byScore != 0 ? byScore : Integer.compare(other.filmId, filmId);
+        }
+    }
+
+    // Строка матрицы: соседи и сходство в диапазоне [from, to) массивов, строки CSR не копируются
+    private static final class Row {
+        private static final Row EMPTY = new Row(new int[0], new float[0], 0, 0);
+
+        private final int[] neighbors;
+        private final float[] scores;
+        private final int from;
+        private final int to;
+
+        private Row(int[] neighbors, float[] scores, int from, int to) {
+            this.neighbors = neighbors;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        private int size() {
+            return to - from;
+        }
+    }
+
+    private static final class Matrix {
+        private final Csr csr;
+        private final Map<Long, Row> overrides;
+
+        private Matrix(Csr csr, Map<Long, Row> overrides) {
+            this.csr = csr;
+            this.overrides = overrides;
+        }
+
+        private Row row(long filmId) {
+            Row row = overrides.get(filmId);
+            return row != null ? row : csr.row(filmId);
+        }
+    }
+
+    private static final class Csr {
+        private static final Csr EMPTY = new Csr(new long[0], new int[]{0}, new int[0], new float[0]);
+
+        private final long[] films;
+        private final int[] offsets;
+        private final int[] neighbors;
+        private final float[] scores;
+
+        private Csr(long[] films, int[] offsets, int[] neighbors, float[] scores) {
+            this.films = films;
+            this.offsets = offsets;
+            this.neighbors = neighbors;
+            this.scores = scores;
+        }
+
+        private Row row(long filmId) {
+            int index = Arrays.binarySearch(films, filmId);
+            if (index < 0) {
+                return Row.EMPTY;
+            }
+            return new Row(neighbors, scores, offsets[index], offsets[index + 1]);
+        }
+    }
+}
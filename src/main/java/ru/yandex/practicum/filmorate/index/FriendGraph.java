@@ -0,0 +1,282 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.user.FriendshipDAO;
+import ru.yandex.practicum.filmorate.model.FriendSet;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф друзей в памяти приложения в формате CSR (compressed sparse row): отсортированные id пользователей,
+ * смещения их строк и один массив id друзей, отсортированных внутри строки, со статусами дружбы в битовой карте.
+ * Изменения после загрузки хранятся поверх CSR как новые строки измененных пользователей.
+ * Граф загружается при старте из user_friends и периодически перестраивается в фоне,
+ * новый граф заменяет текущий одной записью, читатели не блокируются
+ */
+@Component
+@Slf4j
+public class FriendGraph {
+    private final FriendshipDAO friendshipDAO;
+    // Номер последнего изменения, по нему при перестроении отбираются изменения, которых может не быть в загрузке
+    private long version;
+    private volatile State state = new State(Csr.EMPTY, new ConcurrentHashMap<>());
+
+    @Autowired
+    public FriendGraph(FriendshipDAO friendshipDAO) {
+        this.friendshipDAO = friendshipDAO;
+    }
+
+    // Загрузка графа из user_friends при старте
+    @PostConstruct
+    public void load() {
+        rebuild();
+    }
+
+    // Перестроение из user_friends. Изменения, внесенные после начала чтения таблицы, переносятся в новый граф
+    @Scheduled(fixedDelayString = "${filmorate.friends.graph.rebuild-interval-ms:600000}",
+            initialDelayString = "${filmorate.friends.graph.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        long startVersion;
+        synchronized (this) {
+            startVersion = version;
+        }
+
+        Csr.Builder builder = new Csr.Builder();
+        friendshipDAO.forEachFriendship(friendship ->
+                builder.add(friendship.getUserId(), friendship.getFriendId(), friendship.isStatus()));
+        Csr csr = builder.build();
+
+        synchronized (this) {
+            Map<Long, Row> changed = new ConcurrentHashMap<>();
+            state.changed.forEach((userId, row) -> {
+                if (row.version > startVersion) {
+                    changed.put(userId, row);
+                }
+            });
+            state = new State(csr, changed);
+        }
+        log.info("Граф друзей построен, пользователей с друзьями: {}, дружб: {}, размер: {} КБ, изменений поверх: {}",
+                csr.users.length, csr.friends.length, getSizeInBytes() / 1024, state.changed.size());
+    }
+
+    public synchronized void addFriend(long userId, long friendId) {
+        change(userId, friends(userId).with(friendId, false));
+    }
+
+    public synchronized void removeFriend(long userId, long friendId) {
+        change(userId, friends(userId).without(friendId));
+    }
+
+    // Подтверждение меняет статус в строках обоих пользователей
+    public synchronized void confirmFriendship(long userId, long friendId) {
+        change(userId, friends(userId).withStatus(friendId, true));
+        change(friendId, friends(friendId).withStatus(userId, true));
+    }
+
+    // id друзей по возрастанию
+    public long[] getFriends(long userId) {
+        Slice slice = slice(userId);
+        return Arrays.copyOfRange(slice.ids, slice.from, slice.to);
+    }
+
+    // Не больше limit друзей, взятых с равным шагом по всей строке. Строка целиком не копируется
+    public long[] sampleFriends(long userId, int limit) {
+        Slice slice = slice(userId);
+        int size = slice.to - slice.from;
+        if (size <= limit) {
+            return Arrays.copyOfRange(slice.ids, slice.from, slice.to);
+        }
+
+        long[] sample = new long[limit];
+        for (int i = 0; i < limit; i++) {
+            sample[i] = slice.ids[slice.from + (int) ((long) i * size / limit)];
+        }
+        return sample;
+    }
+
+    public boolean isFriend(long userId, long friendId) {
+        State current = state;
+        Row row = current.changed.get(userId);
+        if (row != null) {
+            return row.friends.contains(friendId);
+        }
+        int index = current.csr.indexOf(userId);
+        return index >= 0 && Arrays.binarySearch(current.csr.friends,
+                current.csr.offsets[index], current.csr.offsets[index + 1], friendId) >= 0;
+    }
+
+    // Число друзей пользователя
+    public int degree(long userId) {
+        State current = state;
+        Row row = current.changed.get(userId);
+        if (row != null) {
+            return row.friends.size();
+        }
+        int index = current.csr.indexOf(userId);
+        return index < 0 ? 0 : current.csr.offsets[index + 1] - current.csr.offsets[index];
+    }
+
+    // Общие друзья по возрастанию id, строки CSR сливаются без копирования
+    public long[] getMutualFriends(long userId, long otherId) {
+        Slice first = slice(userId);
+        Slice second = slice(otherId);
+        return FriendSet.intersect(first.ids, first.from, first.to, second.ids, second.from, second.to);
+    }
+
+    // Приблизительный размер CSR и измененных строк в куче
+    public long getSizeInBytes() {
+        State current = state;
+        long size = current.csr.sizeInBytes();
+        for (Row row : current.changed.values()) {
+            size += row.friends.sizeInBytes();
+        }
+        return size;
+    }
+
+    // Строка пользователя: измененная строка или часть массива друзей CSR без копирования
+    private Slice slice(long userId) {
+        State current = state;
+        Row row = current.changed.get(userId);
+        if (row != null) {
+            long[] ids = row.friends.toArray();
+            return new Slice(ids, 0, ids.length);
+        }
+        int index = current.csr.indexOf(userId);
+        return index < 0 ? Slice.EMPTY
+                : new Slice(current.csr.friends, current.csr.offsets[index], current.csr.offsets[index + 1]);
+    }
+
+    // Текущие друзья пользователя для изменения, вызывается под блокировкой
+    private FriendSet friends(long userId) {
+        Row row = state.changed.get(userId);
+        return row != null ? row.friends : state.csr.row(userId);
+    }
+
+    private void change(long userId, FriendSet friends) {
+        state.changed.put(userId, new Row(friends, ++version));
+    }
+
+    private static final class State {
+        private final Csr csr;
+        private final Map<Long, Row> changed;
+
+        private State(Csr csr, Map<Long, Row> changed) {
+            this.csr = csr;
+            this.changed = changed;
+        }
+    }
+
+    // Строка пользователя, измененная после построения CSR
+    private static final class Row {
+        private final FriendSet friends;
+        private final long version;
+
+        private Row(FriendSet friends, long version) {
+            this.friends = friends;
+            this.version = version;
+        }
+    }
+
+    private static final class Slice {
+        private static final Slice EMPTY = new Slice(new long[0], 0, 0);
+
+        private final long[] ids;
+        private final int from;
+        private final int to;
+
+        private Slice(long[] ids, int from, int to) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class Csr {
+        private static final Csr EMPTY = new Csr(new long[0], new int[]{0}, new long[0], new long[0]);
+
+        private final long[] users;
+        private final int[] offsets;
+        private final long[] friends;
+        private final long[] confirmed;
+
+        private Csr(long[] users, int[] offsets, long[] friends, long[] confirmed) {
+            this.users = users;
+            this.offsets = offsets;
+            this.friends = friends;
+            this.confirmed = confirmed;
+        }
+
+        private int indexOf(long userId) {
+            return Arrays.binarySearch(users, userId);
+        }
+
+        private FriendSet row(long userId) {
+            int index = indexOf(userId);
+            if (index < 0) {
+                return FriendSet.EMPTY;
+            }
+            Map<Long, Boolean> row = new HashMap<>();
+            for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+                row.put(friends[i], (confirmed[i >>> 6] & (1L << i)) != 0);
+            }
+            return FriendSet.of(row);
+        }
+
+        // Приблизительный размер в куче с учетом заголовков массивов
+        private long sizeInBytes() {
+            return 16 + 8L * users.length + 16 + 4L * offsets.length + 16 + 8L * friends.length
+                    + 16 + 8L * confirmed.length;
+        }
+
+        /**
+         * Построение CSR из дружб, упорядоченных по (user_id, friend_id)
+         */
+        private static final class Builder {
+            private long[] users = new long[16];
+            private int[] offsets = new int[17];
+            private long[] friends = new long[16];
+            private long[] confirmed = new long[1];
+            private int userCount;
+            private int friendCount;
+
+            private void add(long userId, long friendId, boolean status) {
+                if (userCount == 0 || users[userCount - 1] != userId) {
+                    if (userCount > 0 && users[userCount - 1] > userId) {
+                        throw new IllegalStateException("Дружбы должны быть упорядочены по user_id");
+                    }
+                    if (userCount == users.length) {
+                        users = Arrays.copyOf(users, userCount * 2);
+                        offsets = Arrays.copyOf(offsets, userCount * 2 + 1);
+                    }
+                    offsets[userCount] = friendCount;
+                    users[userCount++] = userId;
+                }
+
+                if (friendCount == friends.length) {
+                    friends = Arrays.copyOf(friends, friendCount * 2);
+                    confirmed = Arrays.copyOf(confirmed, (friends.length + 63) >>> 6);
+                }
+                if (status) {
+                    confirmed[friendCount >>> 6] |= 1L << friendCount;
+                }
+                friends[friendCount++] = friendId;
+            }
+
+            private Csr build() {
+                if (userCount == 0) {
+                    return EMPTY;
+                }
+                offsets[userCount] = friendCount;
+                return new Csr(Arrays.copyOf(users, userCount), Arrays.copyOf(offsets, userCount + 1),
+                        Arrays.copyOf(friends, friendCount), Arrays.copyOf(confirmed, (friendCount + 63) >>> 6));
+            }
+        }
+    }
+}
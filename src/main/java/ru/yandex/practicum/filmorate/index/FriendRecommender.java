@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рекомендации "возможно, вы знакомы": пользователи, которые не являются друзьями,
+ * по убыванию числа общих друзей, при равенстве по возрастанию id. Считаются по графу друзей в памяти.
+ * Работа на запрос ограничена: просматривается не больше maxNeighbors друзей пользователя и не больше maxFanout
+ * друзей каждого из них, у пользователей с большим числом друзей берется равномерная выборка.
+ * Для пользователей с числом друзей от heavyDegree результат кэшируется и периодически пересчитывается в фоне
+ */
+@Component
+@Slf4j
+public class FriendRecommender {
+    private final FriendGraph friendGraph;
+    private final int maxNeighbors;
+    private final int maxFanout;
+    private final int heavyDegree;
+    private final int cachedCount;
+    private final int cacheCapacity;
+    private final Map<Long, long[]> cache = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FriendRecommender(FriendGraph friendGraph,
+                             @Value("${filmorate.friends.recommendations.max-neighbors:200}") int maxNeighbors,
+                             @Value("${filmorate.friends.recommendations.max-fanout:200}") int maxFanout,
+                             @Value("${filmorate.friends.recommendations.heavy-degree:500}") int heavyDegree,
+                             @Value("${filmorate.friends.recommendations.cached-count:100}") int cachedCount,
+                             @Value("${filmorate.friends.recommendations.cache-capacity:10000}") int cacheCapacity) {
+        this.friendGraph = friendGraph;
+        this.maxNeighbors = maxNeighbors;
+        this.maxFanout = maxFanout;
+        this.heavyDegree = heavyDegree;
+        this.cachedCount = cachedCount;
+        this.cacheCapacity = cacheCapacity;
+    }
+
+    // id не больше count рекомендованных пользователей
+    public long[] recommend(long userId, int count) {
+        if (count <= cachedCount && friendGraph.degree(userId) >= heavyDegree) {
+            long[] cached = cache.get(userId);
+            if (cached == null) {
+                cached = compute(userId, cachedCount);
+                if (cache.size() < cacheCapacity) {
+                    cache.put(userId, cached);
+                }
+            }
+            return withoutFriends(userId, cached, count);
+        }
+        return compute(userId, count);
+    }
+
+    // Пересчет закэшированных рекомендаций. Пользователи, у которых стало меньше heavyDegree друзей, удаляются
+    @Scheduled(fixedDelayString = "${filmorate.friends.recommendations.refresh-interval-ms:300000}",
+            initialDelayString = "${filmorate.friends.recommendations.refresh-interval-ms:300000}")
+    public void refresh() {
+        for (Long userId : cache.keySet()) {
+            if (friendGraph.degree(userId) >= heavyDegree) {
+                cache.put(userId, compute(userId, cachedCount));
+            } else {
+                cache.remove(userId);
+            }
+        }
+        log.info("Рекомендации друзей пересчитаны, пользователей в кэше: {}", cache.size());
+    }
+
+    private long[] compute(long userId, int count) {
+        long[] friends = friendGraph.getFriends(userId);
+        Map<Long, int[]> mutualCounts = new HashMap<>();
+
+        for (long friendId : friendGraph.sampleFriends(userId, maxNeighbors)) {
+            for (long candidateId : friendGraph.sampleFriends(friendId, maxFanout)) {
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                    mutualCounts.computeIfAbsent(candidateId, id -> new int[1])[0]++;
+                }
+            }
+        }
+
+        TopK top = new TopK(count);
+        mutualCounts.forEach((candidateId, mutual) -> top.offer(candidateId, mutual[0]));
+        return top.toArray();
+    }
+
+    // Закэшированный результат без тех, кто с момента расчета стал другом
+    private long[] withoutFriends(long userId, long[] cached, int count) {
+        long[] result = new long[Math.min(count, cached.length)];
+        int size = 0;
+        for (int i = 0; i < cached.length && size < result.length; i++) {
+            if (!friendGraph.isFriend(userId, cached[i])) {
+                result[size++] = cached[i];
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
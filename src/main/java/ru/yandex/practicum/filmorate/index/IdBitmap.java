@@ -0,0 +1,689 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Неизменяемое сжатое множество неотрицательных int-идентификаторов по схеме Roaring bitmap.
+ * Значения делятся по старшим 16 битам на контейнеры. Контейнер до 4096 значений хранит отсортированный массив
+ * младших 16 бит (2 байта на значение), больший контейнер - битовую карту на 65536 бит (8 КБ).
+ * Изменение возвращает новое множество, которое разделяет с исходным все контейнеры, кроме измененного,
+ * поэтому множество читается из нескольких потоков без блокировок
+ */
+public final class IdBitmap {
+    public static final IdBitmap EMPTY = new IdBitmap(new char[0], new Container[0], 0);
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final char[] keys;
+    private final Container[] containers;
+    private final int cardinality;
+
+    private IdBitmap(char[] keys, Container[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    public static IdBitmap of(int... values) {
+        Builder builder = new Builder();
+        for (int value : values) {
+            builder.add(value);
+        }
+        return builder.build();
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, high(value));
+        return index >= 0 && containers[index].contains(low(value));
+    }
+
+    public IdBitmap with(int value) {
+        checkValue(value);
+        char key = high(value);
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            Container changed = containers[index].add(low(value));
+            return changed == containers[index] ? this : replace(index, changed, cardinality + 1);
+        }
+
+        int position = -index - 1;
+        char[] newKeys = new char[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, position);
+        System.arraycopy(containers, 0, newContainers, 0, position);
+        newKeys[position] = key;
+        newContainers[position] = new ArrayContainer(new char[]{low(value)});
+        System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+        System.arraycopy(containers, position, newContainers, position + 1, containers.length - position);
+        return new IdBitmap(newKeys, newContainers, cardinality + 1);
+    }
+
+    public IdBitmap without(int value) {
+        if (value < 0) {
+            return this;
+        }
+        int index = Arrays.binarySearch(keys, high(value));
+        if (index < 0) {
+            return this;
+        }
+
+        Container changed = containers[index].remove(low(value));
+        if (changed == containers[index]) {
+            return this;
+        }
+        if (changed.cardinality() > 0) {
+            return replace(index, changed, cardinality - 1);
+        }
+        if (cardinality == 1) {
+            return EMPTY;
+        }
+
+        char[] newKeys = new char[keys.length - 1];
+        Container[] newContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+        return new IdBitmap(newKeys, newContainers, cardinality - 1);
+    }
+
+    public IdBitmap and(IdBitmap other) {
+        int length = Math.min(keys.length, other.keys.length);
+        char[] newKeys = new char[length];
+        Container[] newContainers = new Container[length];
+        int size = 0;
+        int total = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    newKeys[size] = keys[i];
+                    newContainers[size++] = container;
+                    total += container.cardinality();
+                }
+                i++;
+                j++;
+            }
+        }
+        return create(newKeys, newContainers, size, total);
+    }
+
+    // Размер пересечения без построения самого пересечения
+    public int andCardinality(IdBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    public IdBitmap or(IdBitmap other) {
+        char[] newKeys = new char[keys.length + other.keys.length];
+        Container[] newContainers = new Container[newKeys.length];
+        int size = 0;
+        int total = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            Container container;
+            if (j == other.keys.length || i < keys.length && keys[i] < other.keys[j]) {
+                newKeys[size] = keys[i];
+                container = containers[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                newKeys[size] = other.keys[j];
+                container = other.containers[j++];
+            } else {
+                newKeys[size] = keys[i];
+                container = containers[i++].or(other.containers[j++]);
+            }
+            newContainers[size++] = container;
+            total += container.cardinality();
+        }
+        return create(newKeys, newContainers, size, total);
+    }
+
+    // Значения этого множества, которых нет в other
+    public IdBitmap andNot(IdBitmap other) {
+        char[] newKeys = new char[keys.length];
+        Container[] newContainers = new Container[keys.length];
+        int size = 0;
+        int total = 0;
+
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.keys.length && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j])
+                    : containers[i];
+            if (container.cardinality() > 0) {
+                newKeys[size] = keys[i];
+                newContainers[size++] = container;
+                total += container.cardinality();
+            }
+        }
+        return create(newKeys, newContainers, size, total);
+    }
+
+    // Обход значений по возрастанию
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[cardinality];
+        int[] position = new int[1];
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    // Первые count значений по возрастанию. Обход останавливается на контейнере, в котором набрано count значений
+    public int[] first(int count) {
+        int[] values = new int[Math.min(count, cardinality)];
+        int[] position = new int[1];
+        for (int i = 0; i < keys.length && position[0] < values.length; i++) {
+            containers[i].forEach(keys[i] << 16, value -> {
+                if (position[0] < values.length) {
+                    values[position[0]++] = value;
+                }
+            });
+        }
+        return values;
+    }
+
+    public List<Long> toIdList() {
+        List<Long> ids = new ArrayList<>(cardinality);
+        forEach(value -> ids.add((long) value));
+        return ids;
+    }
+
+    // Приблизительный размер в куче с учетом заголовков объектов и массивов
+    public long sizeInBytes() {
+        long size = 16 + 16 + 2L * keys.length + 16 + 4L * containers.length;
+        for (Container container : containers) {
+            size += container.sizeInBytes();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IdBitmap)) {
+            return false;
+        }
+        IdBitmap other = (IdBitmap) o;
+        return cardinality == other.cardinality && Arrays.equals(toArray(), other.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private IdBitmap replace(int index, Container container, int newCardinality) {
+        Container[] newContainers = containers.clone();
+        newContainers[index] = container;
+        return new IdBitmap(keys, newContainers, newCardinality);
+    }
+
+    private static IdBitmap create(char[] keys, Container[] containers, int size, int cardinality) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        if (size < keys.length) {
+            return new IdBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size), cardinality);
+        }
+        return new IdBitmap(keys, containers, cardinality);
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Отрицательный id не может быть добавлен в индекс: " + value);
+        }
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    /**
+     * Построение множества из неупорядоченных значений, используется при загрузке индексов
+     */
+    public static final class Builder {
+        private int[] values = new int[4];
+        private int size;
+
+        public Builder add(int value) {
+            checkValue(value);
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            return this;
+        }
+
+        public IdBitmap build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+
+            List<Character> keys = new ArrayList<>();
+            List<Container> containers = new ArrayList<>();
+            char[] lows = new char[Math.min(sorted.length, BITMAP_WORDS * 64)];
+            int total = 0;
+
+            int start = 0;
+            while (start < sorted.length) {
+                char key = high(sorted[start]);
+                int count = 0;
+                int end = start;
+                for (; end < sorted.length && high(sorted[end]) == key; end++) {
+                    if (end == start || sorted[end] != sorted[end - 1]) {
+                        lows[count++] = low(sorted[end]);
+                    }
+                }
+                keys.add(key);
+                containers.add(count <= ARRAY_MAX
+                        ? new ArrayContainer(Arrays.copyOf(lows, count))
+                        : BitmapContainer.of(lows, count));
+                total += count;
+                start = end;
+            }
+
+            char[] keyArray = new char[keys.size()];
+            for (int i = 0; i < keyArray.length; i++) {
+                keyArray[i] = keys.get(i);
+            }
+            return new IdBitmap(keyArray, containers.toArray(new Container[0]), total);
+        }
+    }
+
+    private interface Container {
+        int cardinality();
+
+        boolean contains(char low);
+
+        Container add(char low);
+
+        Container remove(char low);
+
+        Container and(Container other);
+
+        int andCardinality(Container other);
+
+        Container or(Container other);
+
+        Container andNot(Container other);
+
+        void forEach(int high, IntConsumer action);
+
+        long sizeInBytes();
+    }
+
+    // Отсортированный массив младших 16 бит, длина массива равна числу значений
+    private static final class ArrayContainer implements Container {
+        private final char[] values;
+
+        private ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        public Container add(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (values.length == ARRAY_MAX) {
+                return BitmapContainer.of(values, values.length).add(low);
+            }
+
+            int position = -index - 1;
+            char[] newValues = new char[values.length + 1];
+            System.arraycopy(values, 0, newValues, 0, position);
+            newValues[position] = low;
+            System.arraycopy(values, position, newValues, position + 1, values.length - position);
+            return new ArrayContainer(newValues);
+        }
+
+        @Override
+        public Container remove(char low) {
+            int index = Arrays.binarySearch(values, low);
+            if (index < 0) {
+                return this;
+            }
+
+            char[] newValues = new char[values.length - 1];
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+            return new ArrayContainer(newValues);
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] result = new char[values.length];
+            int size = 0;
+            if (other instanceof ArrayContainer) {
+                char[] otherValues = ((ArrayContainer) other).values;
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < otherValues.length) {
+                    if (values[i] < otherValues[j]) {
+                        i++;
+                    } else if (values[i] > otherValues[j]) {
+                        j++;
+                    } else {
+                        result[size++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (char value : values) {
+                    if (other.contains(value)) {
+                        result[size++] = value;
+                    }
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                char[] otherValues = ((ArrayContainer) other).values;
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < otherValues.length) {
+                    if (values[i] < otherValues[j]) {
+                        i++;
+                    } else if (values[i] > otherValues[j]) {
+                        j++;
+                    } else {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (char value : values) {
+                    if (other.contains(value)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+
+            char[] otherValues = ((ArrayContainer) other).values;
+            char[] result = new char[values.length + otherValues.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < values.length || j < otherValues.length) {
+                if (j == otherValues.length || i < values.length && values[i] < otherValues[j]) {
+                    result[size++] = values[i++];
+                } else if (i == values.length || values[i] > otherValues[j]) {
+                    result[size++] = otherValues[j++];
+                } else {
+                    result[size++] = values[i++];
+                    j++;
+                }
+            }
+            return size <= ARRAY_MAX
+                    ? new ArrayContainer(Arrays.copyOf(result, size))
+                    : BitmapContainer.of(result, size);
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            char[] result = new char[values.length];
+            int size = 0;
+            for (char value : values) {
+                if (!other.contains(value)) {
+                    result[size++] = value;
+                }
+            }
+            return size == values.length ? this : new ArrayContainer(Arrays.copyOf(result, size));
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer action) {
+            for (char value : values) {
+                action.accept(high | value);
+            }
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16 + 16 + 2L * values.length;
+        }
+    }
+
+    // Битовая карта на 65536 значений
+    private static final class BitmapContainer implements Container {
+        private final long[] words;
+        private final int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        private static BitmapContainer of(char[] values, int size) {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, size);
+        }
+
+        // Карта, в которой осталось не больше ARRAY_MAX значений, переводится обратно в массив
+        private static Container fromWords(long[] words, int cardinality) {
+            if (cardinality > ARRAY_MAX) {
+                return new BitmapContainer(words, cardinality);
+            }
+
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[size++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container add(char low) {
+            if (contains(low)) {
+                return this;
+            }
+            long[] newWords = words.clone();
+            newWords[low >>> 6] |= 1L << low;
+            return new BitmapContainer(newWords, cardinality + 1);
+        }
+
+        @Override
+        public Container remove(char low) {
+            if (!contains(low)) {
+                return this;
+            }
+            long[] newWords = words.clone();
+            newWords[low >>> 6] &= ~(1L << low);
+            return fromWords(newWords, cardinality - 1);
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return fromWords(result, count);
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        public Container or(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer) {
+                for (char value : ((ArrayContainer) other).values) {
+                    long bit = 1L << value;
+                    if ((result[value >>> 6] & bit) == 0) {
+                        result[value >>> 6] |= bit;
+                        count++;
+                    }
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] |= otherWords[i];
+                    count += Long.bitCount(result[i]);
+                }
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer) {
+                for (char value : ((ArrayContainer) other).values) {
+                    long bit = 1L << value;
+                    if ((result[value >>> 6] & bit) != 0) {
+                        result[value >>> 6] &= ~bit;
+                        count--;
+                    }
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] &= ~otherWords[i];
+                    count += Long.bitCount(result[i]);
+                }
+            }
+            return fromWords(result, count);
+        }
+
+        @Override
+        public void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16 + 16 + 8L * BITMAP_WORDS + 4;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.film.LikesDAO;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс лайков в памяти приложения: для фильма - множество лайкнувших пользователей,
+ * для пользователя - множество понравившихся фильмов. Множества хранятся в сжатом виде IdBitmap,
+ * около 2 байт на лайк в каждом направлении вместо ~50 байт у HashSet<Long>.
+ * Заполняется при старте из film_likes и обновляется при каждом добавлении/удалении лайка
+ */
+@Component
+@Slf4j
+public class LikeIndex {
+    private final LikesDAO likesDAO;
+    private final Map<Long, IdBitmap> usersByFilm = new ConcurrentHashMap<>();
+    private final Map<Long, IdBitmap> filmsByUser = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LikeIndex(LikesDAO likesDAO) {
+        this.likesDAO = likesDAO;
+    }
+
+    // Загрузка индекса из film_likes. Строки читаются потоком и собираются в множества по фильмам и пользователям
+    @PostConstruct
+    public void load() {
+        Map<Long, IdBitmap.Builder> users = new HashMap<>();
+        Map<Long, IdBitmap.Builder> films = new HashMap<>();
+        long[] likes = new long[1];
+
+        likesDAO.forEachLike(like -> {
+            users.computeIfAbsent(like.getFilmId(), id -> new IdBitmap.Builder()).add(toIndex(like.getUserId()));
+            films.computeIfAbsent(like.getUserId(), id -> new IdBitmap.Builder()).add(toIndex(like.getFilmId()));
+            likes[0]++;
+        });
+
+        usersByFilm.clear();
+        filmsByUser.clear();
+        users.forEach((filmId, builder) -> usersByFilm.put(filmId, builder.build()));
+        films.forEach((userId, builder) -> filmsByUser.put(userId, builder.build()));
+        log.info("Индекс лайков загружен, лайков: {}, фильмов: {}, пользователей: {}, размер: {} КБ",
+                likes[0], usersByFilm.size(), filmsByUser.size(), getSizeInBytes() / 1024);
+    }
+
+    // Оба направления меняются атомарно каждое по отдельности, между изменениями читатель может увидеть лайк
+    // только в одном из них
+    public void addLike(long filmId, long userId) {
+        usersByFilm.compute(filmId, (id, users) -> (users == null ? IdBitmap.EMPTY : users).with(toIndex(userId)));
+        filmsByUser.compute(userId, (id, films) -> (films == null ? IdBitmap.EMPTY : films).with(toIndex(filmId)));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        usersByFilm.computeIfPresent(filmId, (id, users) -> nullIfEmpty(users.without(toIndex(userId))));
+        filmsByUser.computeIfPresent(userId, (id, films) -> nullIfEmpty(films.without(toIndex(filmId))));
+    }
+
+    public void removeFilm(long filmId) {
+        IdBitmap users = usersByFilm.remove(filmId);
+        if (users != null) {
+            int film = toIndex(filmId);
+            users.forEach(userId -> filmsByUser.computeIfPresent((long) userId,
+                    (id, films) -> nullIfEmpty(films.without(film))));
+        }
+    }
+
+    // Пользователи, лайкнувшие фильм
+    public IdBitmap getFilmLikes(long filmId) {
+        return usersByFilm.getOrDefault(filmId, IdBitmap.EMPTY);
+    }
+
+    // Фильмы, которые лайкнул пользователь
+    public IdBitmap getUserLikes(long userId) {
+        return filmsByUser.getOrDefault(userId, IdBitmap.EMPTY);
+    }
+
+    // id фильмов, у которых есть лайки, по возрастанию
+    public long[] getLikedFilms() {
+        return usersByFilm.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    public long getSizeInBytes() {
+        long size = 0;
+        for (IdBitmap users : usersByFilm.values()) {
+            size += users.sizeInBytes();
+        }
+        for (IdBitmap films : filmsByUser.values()) {
+            size += films.sizeInBytes();
+        }
+        return size;
+    }
+
+    private static IdBitmap nullIfEmpty(IdBitmap bitmap) {
+        return bitmap.isEmpty() ? null : bitmap;
+    }
+
+    // Индекс хранит id как int, id за пределами int в приложении не выдаются
+    private static int toIndex(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("id вне диапазона индекса лайков: " + id);
+        }
+        return (int) id;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.PriorityQueue;
+
+/**
+ * Отбор не больше limit id с наибольшей оценкой, при равенстве оценок с меньшим id.
+ * Куча размера limit, в корне худший из отобранных, поэтому отбор из n кандидатов стоит O(n log limit)
+ */
+public final class TopK {
+    private final int limit;
+    private final PriorityQueue<Candidate> heap;
+
+    public TopK(int limit) {
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(limit + 1);
+    }
+
+    public void offer(long id, double score) {
+        if (limit <= 0) {
+            return;
+        }
+        Candidate candidate = new Candidate(id, score);
+        if (heap.size() < limit) {
+            heap.add(candidate);
+        } else if (candidate.compareTo(heap.peek()) > 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    // Отобранные id от лучшего к худшему, куча при этом опустошается
+    public long[] toArray() {
+        long[] result = new long[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll().id;
+        }
+        return result;
+    }
+
+    // Кандидат тем лучше, чем больше оценка, при равенстве чем меньше id
+    private static final class Candidate implements Comparable<Candidate> {
+        private final long id;
+        private final double score;
+
+        private Candidate(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(other.id, id);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.film.FilmGenreDAO;
+import ru.yandex.practicum.filmorate.dao.film.GenreDAO;
+import ru.yandex.practicum.filmorate.dao.film.LikesDAO;
+import ru.yandex.practicum.filmorate.dao.film.RatingMpaDAO;
+import ru.yandex.practicum.filmorate.dao.user.FriendshipDAO;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оборачивает хранилища, DAO и сервисы в прокси, который замеряет время каждого публичного метода.
+ * Таймеры filmorate.dao и filmorate.service с тегами class, method и exception.
+ * Прокси создается наследованием от класса, поэтому бины по-прежнему внедряются и по конкретному классу
+ */
+@Component
+public class MethodMetricsPostProcessor implements BeanPostProcessor, SmartInitializingSingleton {
+    public static final String DAO_TIMER = "filmorate.dao";
+    public static final String SERVICE_TIMER = "filmorate.service";
+
+    private static final List<Class<?>> DAO_TYPES = List.of(FilmStorage.class, UserStorage.class, LikesDAO.class,
+            FriendshipDAO.class, FilmGenreDAO.class, GenreDAO.class, RatingMpaDAO.class);
+    private static final List<Class<?>> SERVICE_TYPES = List.of(FilmService.class, UserService.class,
+            FilmImportService.class);
+    private static final String NO_EXCEPTION = "none";
+
+    private final ObjectProvider<MeterRegistry> registryProvider;
+    // Реестр берется после создания всех бинов, до этого вызовы выполняются без замеров
+    private volatile MeterRegistry registry;
+
+    public MethodMetricsPostProcessor(ObjectProvider<MeterRegistry> registryProvider) {
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        registry = registryProvider.getIfAvailable();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        String timerName = timerName(AopUtils.getTargetClass(bean));
+        if (timerName == null) {
+            return bean;
+        }
+
+        String className = AopUtils.getTargetClass(bean).getSimpleName();
+        // Таймеры свои у каждого прокси: унаследованный метод у двух бинов - один объект Method, но разные теги class
+        Map<Method, Timer> timers = new ConcurrentHashMap<>();
+        Map<Method, Map<Class<?>, Timer>> errorTimers = new ConcurrentHashMap<>();
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            Method method = invocation.getMethod();
+            MeterRegistry meterRegistry = registry;
+            if (meterRegistry == null || method.getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+
+            long start = System.nanoTime();
+            try {
+                Object result = invocation.proceed();
+                timers.computeIfAbsent(method, m -> timer(meterRegistry, timerName, className, m, NO_EXCEPTION))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return result;
+            } catch (Throwable e) {
+                errorTimers.computeIfAbsent(method, m -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(e.getClass(), type -> timer(meterRegistry, timerName, className, method,
+                                type.getSimpleName()))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+        });
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    private Timer timer(MeterRegistry meterRegistry, String name, String className, Method method, String exception) {
+        return Timer.builder(name)
+                .tag("class", className)
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+
+    private String timerName(Class<?> beanClass) {
+        if (DAO_TYPES.stream().anyMatch(type -> type.isAssignableFrom(beanClass))) {
+            return DAO_TIMER;
+        }
+        if (SERVICE_TYPES.stream().anyMatch(type -> type.isAssignableFrom(beanClass))) {
+            return SERVICE_TIMER;
+        }
+        return null;
+    }
+}
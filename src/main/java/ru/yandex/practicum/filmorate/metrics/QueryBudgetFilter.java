@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Считает SQL-запросы каждого HTTP-запроса и записывает их в метрику filmorate.sql.statements
+ * с тегами method и uri (шаблон пути), в том числе для завершившихся исключением.
+ * При превышении бюджета из QueryBudgetProperties пишет предупреждение. В строгом режиме ответ буферизуется,
+ * чтобы при превышении бюджета завершить запрос ошибкой до отправки ответа клиенту
+ */
+@Component
+@Slf4j
+public class QueryBudgetFilter extends OncePerRequestFilter {
+    public static final String STATEMENTS_METRIC = "filmorate.sql.statements";
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MeterRegistry registry;
+    private final QueryBudgetProperties budget;
+
+    @Autowired
+    public QueryBudgetFilter(MeterRegistry registry, QueryBudgetProperties budget) {
+        this.registry = registry;
+        this.budget = budget;
+    }
+
+    // Фильтр проходит и повторный вызов после асинхронной выгрузки, чтобы отправить ее буферизованный ответ
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                copyBuffered(response);
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper buffered = budget.isStrict() ? new ContentCachingResponseWrapper(response) : null;
+        QueryCounter.Scope scope = QueryCounter.start();
+        long count;
+        String uri;
+        try {
+            chain.doFilter(request, buffered != null ? buffered : response);
+        } finally {
+            count = scope.getCount();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            uri = pattern != null ? pattern.toString() : UNKNOWN_URI;
+            DistributionSummary.builder(STATEMENTS_METRIC)
+                    .description("Число SQL-запросов на один HTTP-запрос")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(registry)
+                    .record(count);
+        }
+
+        // Асинхронный ответ еще пишется, его запросы к БД выполняются в другом потоке и бюджетом не проверяются
+        if (isAsyncStarted(request)) {
+            return;
+        }
+
+        int limit = budget.getBudget(request.getMethod(), uri);
+        if (count > limit) {
+            String message = String.format("%s %s выполнил SQL-запросов: %d, бюджет: %d",
+                    request.getMethod(), uri, count, limit);
+            // Буферизованный ответ еще не отправлен, вместо него клиент получит ошибку
+            if (buffered != null) {
+                throw new IllegalStateException(message);
+            }
+            log.warn(message);
+        }
+        if (buffered != null) {
+            buffered.copyBodyToResponse();
+        }
+    }
+
+    private static void copyBuffered(HttpServletResponse response) throws IOException {
+        ContentCachingResponseWrapper buffered = WebUtils.getNativeResponse(response,
+                ContentCachingResponseWrapper.class);
+        if (buffered != null) {
+            buffered.copyBodyToResponse();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Допустимое число SQL-запросов на один HTTP-запрос.
+ * endpoints - бюджет по ключу "МЕТОД шаблон", например "GET /films/{id}", для остальных действует limit.
+ * При strict = true превышение бюджета завершает запрос исключением, режим предназначен для тестов
+ */
+@Component
+@ConfigurationProperties(prefix = "filmorate.sql.budget")
+@Data
+public class QueryBudgetProperties {
+    private int limit = 10;
+    private boolean strict;
+    private Map<String, Integer> endpoints = new HashMap<>();
+
+    public int getBudget(String method, String pattern) {
+        return endpoints.getOrDefault(method + " " + pattern, limit);
+    }
+}
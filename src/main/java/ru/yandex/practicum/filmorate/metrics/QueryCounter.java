@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+/**
+ * Счетчик SQL-запросов текущего потока. Увеличивается QueryCountingDataSource при каждом выполнении запроса,
+ * пакет batchUpdate считается одним запросом.
+ * Scope фиксирует значение счетчика при создании, поэтому области можно вкладывать друг в друга.
+ * Запросы, выполненные в других потоках (например, при потоковой выгрузке), в Scope не попадают
+ */
+public final class QueryCounter {
+    private static final ThreadLocal<long[]> COUNTER = ThreadLocal.withInitial(() -> new long[1]);
+
+    private QueryCounter() {
+    }
+
+    public static Scope start() {
+        return new Scope(COUNTER.get());
+    }
+
+    // Число запросов, выполненных действием в текущем потоке
+    public static long count(Runnable action) {
+        Scope scope = start();
+        action.run();
+        return scope.getCount();
+    }
+
+    static void increment() {
+        COUNTER.get()[0]++;
+    }
+
+    public static class Scope {
+        private final long[] counter;
+        private final long start;
+
+        private Scope(long[] counter) {
+            this.counter = counter;
+            this.start = counter[0];
+        }
+
+        public long getCount() {
+            return counter[0] - start;
+        }
+    }
+}
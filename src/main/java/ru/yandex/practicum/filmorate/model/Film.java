@@ -1,6 +1,13 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotEmpty;
@@ -8,14 +15,22 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Data
 @NotNull
 public class Film {
     private final LocalDate releaseDate;
-    private final Set<Long> likesByUsers = new HashSet<>();
+    // Полный список лайкнувших хранится только в памяти, в БД хранилище заполняется лишь счетчик.
+    // Лайки лежат в отдельном объекте, общем для всех версий фильма в хранилище в памяти
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Likes likes = new Likes();
     private Set<Genre> genres;
     private RatingMpa mpa;
 
@@ -40,14 +55,62 @@ public class Film {
     }
 
     public boolean addLike(long userId) {
-        return likesByUsers.add(userId);
+        return likes.add(userId);
     }
 
+    @JsonIgnore
     public int getLikesNumber() {
-        return likesByUsers.size();
+        return likes.count.get();
     }
 
     public boolean deleteLike(long userId) {
-        return likesByUsers.remove(userId);
+        return likes.remove(userId);
+    }
+
+    @JsonIgnore
+    public Set<Long> getLikesByUsers() {
+        return likes.users;
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @EqualsAndHashCode.Include
+    @ToString.Include
+    public int getLikesCount() {
+        return likes.count.get();
+    }
+
+    public void setLikesCount(int likesCount) {
+        likes.count.set(likesCount);
+    }
+
+    // Новая версия фильма при замене в хранилище в памяти переходит на лайки предыдущей, а не копирует их:
+    // лайк, поставленный старой версии уже после замены, виден и новой. Лайки самой новой версии добавляются к ним
+    public void takeLikesFrom(Film previous) {
+        if (previous != this) {
+            likes.users.forEach(previous.likes::add);
+            likes = previous.likes;
+        }
+    }
+
+    // Множество и счетчик изменяются без блокировок, лайк засчитывается тем вызовом, который добавил его в множество
+    private static final class Likes {
+        private final Set<Long> users = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        private boolean add(long userId) {
+            if (users.add(userId)) {
+                count.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean remove(long userId) {
+            if (users.remove(userId)) {
+                count.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
     }
 }
\ No newline at end of file
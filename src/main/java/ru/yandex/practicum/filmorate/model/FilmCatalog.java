@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Страница каталога фильмов по фильтру: первые фильмы, общее число подходящих фильмов и число фильмов
+ * по каждому значению жанра, рейтинга MPA и года выпуска. Число по значению фильтра считается с учетом
+ * остальных фильтров, но без него самого, поэтому показывает, сколько фильмов добавит выбор этого значения
+ */
+@Data
+public class FilmCatalog {
+    private final List<Film> items;
+    private final int total;
+    private final Facets facets;
+
+    @Data
+    public static class Facets {
+        private final Map<Integer, Integer> genres;
+        private final Map<Integer, Integer> mpa;
+        private final Map<Integer, Integer> years;
+    }
+}
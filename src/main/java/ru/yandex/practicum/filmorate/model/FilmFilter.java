@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.Set;
+
+/**
+ * Фильтр каталога фильмов. Значения одного фильтра объединяются через ИЛИ, разные фильтры - через И.
+ * Пустой набор или null в границе года - фильтр не задан. popular - сортировка по числу лайков, иначе по id
+ */
+@Data
+public class FilmFilter {
+    private Set<Integer> genres = Set.of();
+    private Set<Integer> mpa = Set.of();
+    private Integer yearFrom;
+    private Integer yearTo;
+    private boolean popular;
+}
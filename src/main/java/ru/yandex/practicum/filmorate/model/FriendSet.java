@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемое множество друзей пользователя: отсортированный массив id без упаковки в Long
+ * и параллельная битовая карта статусов дружбы, около 8 байт на друга вместо ~60 байт у HashMap<Long, Boolean>.
+ * Изменение возвращает новое множество, поэтому оно читается из нескольких потоков без блокировок
+ */
+public final class FriendSet {
+    public static final FriendSet EMPTY = new FriendSet(new long[0], new long[0]);
+
+    private final long[] ids;
+    private final long[] confirmed;
+
+    private FriendSet(long[] ids, long[] confirmed) {
+        this.ids = ids;
+        this.confirmed = confirmed;
+    }
+
+    // Множество из друзей со статусами, сортировка один раз вместо вставки по одному
+    public static FriendSet of(Map<Long, Boolean> friends) {
+        if (friends.isEmpty()) {
+            return EMPTY;
+        }
+
+        long[] ids = friends.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+        long[] confirmed = new long[words(ids.length)];
+        for (int i = 0; i < ids.length; i++) {
+            if (Boolean.TRUE.equals(friends.get(ids[i]))) {
+                confirmed[i >>> 6] |= 1L << i;
+            }
+        }
+        return new FriendSet(ids, confirmed);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    // Статус дружбы, false и для отсутствующего друга
+    public boolean isConfirmed(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 && isConfirmedAt(confirmed, index);
+    }
+
+    // Новое множество с другом id, то же самое множество, если друг уже есть
+    public FriendSet with(long id, boolean status) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return this;
+        }
+
+        int position = -index - 1;
+        long[] newIds = new long[ids.length + 1];
+        System.arraycopy(ids, 0, newIds, 0, position);
+        newIds[position] = id;
+        System.arraycopy(ids, position, newIds, position + 1, ids.length - position);
+
+        long[] newConfirmed = new long[words(newIds.length)];
+        for (int i = 0, j = 0; i < newIds.length; i++) {
+            if (i == position ? status : isConfirmedAt(confirmed, j++)) {
+                newConfirmed[i >>> 6] |= 1L << i;
+            }
+        }
+        return new FriendSet(newIds, newConfirmed);
+    }
+
+    // Новое множество с измененным статусом друга id, то же самое множество, если друга нет или статус уже такой
+    public FriendSet withStatus(long id, boolean status) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0 || isConfirmedAt(confirmed, index) == status) {
+            return this;
+        }
+
+        long[] newConfirmed = confirmed.clone();
+        newConfirmed[index >>> 6] ^= 1L << index;
+        return new FriendSet(ids, newConfirmed);
+    }
+
+    // Новое множество с друзьями из friends, статусы уже имеющихся друзей не меняются
+    public FriendSet withAll(Map<Long, Boolean> friends) {
+        if (friends.isEmpty()) {
+            return this;
+        }
+        Map<Long, Boolean> merged = new HashMap<>(friends);
+        merged.putAll(toMap());
+        return merged.size() == ids.length ? this : of(merged);
+    }
+
+    // Новое множество без друга id, то же самое множество, если друга нет
+    public FriendSet without(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return this;
+        }
+        if (ids.length == 1) {
+            return EMPTY;
+        }
+
+        long[] newIds = new long[ids.length - 1];
+        System.arraycopy(ids, 0, newIds, 0, index);
+        System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+
+        long[] newConfirmed = new long[words(newIds.length)];
+        for (int i = 0, j = 0; j < ids.length; j++) {
+            if (j == index) {
+                continue;
+            }
+            if (isConfirmedAt(confirmed, j)) {
+                newConfirmed[i >>> 6] |= 1L << i;
+            }
+            i++;
+        }
+        return new FriendSet(newIds, newConfirmed);
+    }
+
+    // Общие друзья по возрастанию id
+    public long[] intersect(FriendSet other) {
+        return intersect(ids, 0, ids.length, other.ids, 0, other.ids.length);
+    }
+
+    // Общие id частей [from, to) двух отсортированных массивов по возрастанию, слиянием за O(n + m)
+    public static long[] intersect(long[] first, int firstFrom, int firstTo,
+                                   long[] second, int secondFrom, int secondTo) {
+        long[] result = new long[Math.min(firstTo - firstFrom, secondTo - secondFrom)];
+        int size = 0;
+        int i = firstFrom;
+        int j = secondFrom;
+        while (i < firstTo && j < secondTo) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    public long[] toArray() {
+        return ids.clone();
+    }
+
+    public List<Long> toIdList() {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    // Друзья со статусами по возрастанию id
+    public Map<Long, Boolean> toMap() {
+        Map<Long, Boolean> map = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            map.put(ids[i], isConfirmedAt(confirmed, i));
+        }
+        return map;
+    }
+
+    // Приблизительный размер в куче с учетом заголовков объектов и массивов
+    public long sizeInBytes() {
+        return 16 + 16 + 8L * ids.length + 16 + 8L * confirmed.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FriendSet)) {
+            return false;
+        }
+        FriendSet other = (FriendSet) o;
+        return Arrays.equals(ids, other.ids) && Arrays.equals(confirmed, other.confirmed);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(ids) + Arrays.hashCode(confirmed);
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private static boolean isConfirmedAt(long[] confirmed, int index) {
+        return (confirmed[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+}
@@ -4,8 +4,8 @@ import lombok.Data;
 
 @Data
 public class Genre {
-    private int id;
-    private String name;
+    private final int id;
+    private final String name;
 
     public Genre(int id, String name) {
         this.id = id;
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Результат загрузки NDJSON: число сохраненных и отклоненных строк и ошибки по номерам строк.
+ * Список ошибок ограничен MAX_ERRORS, счетчик failed учитывает все отклоненные строки
+ */
+@Data
+public class ImportReport {
+    public static final int MAX_ERRORS = 1000;
+
+    private long imported;
+    private long failed;
+    private final List<LineError> errors = new ArrayList<>();
+
+    public void addImported(long count) {
+        imported += count;
+    }
+
+    public void addError(long line, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new LineError(line, message));
+        }
+    }
+
+    @Data
+    public static class LineError {
+        private final long line;
+        private final String message;
+    }
+}
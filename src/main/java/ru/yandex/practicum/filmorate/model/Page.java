@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Страница списка при постраничном выводе. next - курсор следующей страницы, null если страница последняя
+ */
+@Data
+public class Page<T> {
+    private final List<T> items;
+    private final String next;
+}
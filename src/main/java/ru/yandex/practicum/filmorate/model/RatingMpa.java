@@ -4,8 +4,8 @@ import lombok.Data;
 
 @Data
 public class RatingMpa {
-    private int id;
-    private String name;
+    private final int id;
+    private final String name;
 
     public RatingMpa(int id, String name) {
         this.id = id;
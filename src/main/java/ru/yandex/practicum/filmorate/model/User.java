@@ -1,21 +1,33 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PastOrPresent;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Data
 @NotNull
 public class User {
-    private final Map<Long, Boolean> friends = new HashMap<>();
+    // Друзья изменяются без блокировок заменой неизменяемого множества, чтение не ждет параллельных изменений.
+    // Ссылка на множество общая для всех версий пользователя в хранилище в памяти
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private AtomicReference<FriendSet> friendSet = new AtomicReference<>(FriendSet.EMPTY);
 
     @NotBlank(message = "login не может быть пустым")
     private String login;
@@ -38,18 +50,66 @@ public class User {
     }
 
     public boolean addFriend(long id, boolean status) {
-        if (friends.containsKey(id)) {
-            return false;
+        while (true) {
+            FriendSet prev = friendSet.get();
+            FriendSet next = prev.with(id, status);
+            if (next == prev) {
+                return false;
+            }
+            if (friendSet.compareAndSet(prev, next)) {
+                return true;
+            }
+        }
+    }
+
+    // Добавление нескольких друзей одной заменой множества
+    public void addFriends(Map<Long, Boolean> friends) {
+        while (true) {
+            FriendSet prev = friendSet.get();
+            FriendSet next = prev.withAll(friends);
+            if (next == prev || friendSet.compareAndSet(prev, next)) {
+                return;
+            }
         }
-        friends.put(id, status);
-        return true;
     }
 
     public boolean removeFriend(long id) {
-        return friends.remove(id) != null;
+        while (true) {
+            FriendSet prev = friendSet.get();
+            FriendSet next = prev.without(id);
+            if (next == prev) {
+                return false;
+            }
+            if (friendSet.compareAndSet(prev, next)) {
+                return true;
+            }
+        }
+    }
+
+    @JsonIgnore
+    @EqualsAndHashCode.Include
+    @ToString.Include
+    public FriendSet getFriendSet() {
+        return friendSet.get();
+    }
+
+    // Друзья со статусами дружбы в JSON
+    public Map<Long, Boolean> getFriends() {
+        return friendSet.get().toMap();
     }
 
     public List<Long> getFriendsId() {
-        return new ArrayList<>(friends.keySet());
+        return friendSet.get().toIdList();
+    }
+
+    // Новая версия пользователя при замене в хранилище в памяти переходит на ссылку предыдущей, а не копирует
+    // множество: друг, добавленный старой версии уже после замены, виден и новой. Друзья самой новой версии
+    // добавляются к ним
+    public void takeFriendsFrom(User previous) {
+        if (previous != this) {
+            Map<Long, Boolean> own = friendSet.get().toMap();
+            friendSet = previous.friendSet;
+            addFriends(own);
+        }
     }
 }
\ No newline at end of file
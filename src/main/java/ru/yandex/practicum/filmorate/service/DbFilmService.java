@@ -3,31 +3,49 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.dao.film.LikesDAO;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.FilmSimilarityIndex;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.util.KeyLocks;
 import ru.yandex.practicum.filmorate.util.StorageException;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Component
 @Primary
 @Slf4j
 public class DbFilmService extends DefaultFilmService {
+    private static final int LIKE_LOCKS = 256;
+
     private final LikesDAO likesDAO;
+    private final FilmLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final FilmSimilarityIndex similarityIndex;
+    // Блокировки пар (фильм, пользователь): запись лайка и изменение индексов по паре выполняются в одном порядке
+    private final KeyLocks likeLocks = new KeyLocks(LIKE_LOCKS);
 
     @Autowired
-    public DbFilmService(FilmStorage filmStorage, UserStorage userStorage, LikesDAO likesDAO) {
+    public DbFilmService(FilmStorage filmStorage, UserStorage userStorage, LikesDAO likesDAO,
+                         FilmLeaderboard leaderboard, LikeIndex likeIndex, FilmSimilarityIndex similarityIndex) {
         super(filmStorage, userStorage);
         this.likesDAO = likesDAO;
+        this.leaderboard = leaderboard;
+        this.likeIndex = likeIndex;
+        this.similarityIndex = similarityIndex;
     }
 
+    // Наличие лайка проверяется первичным ключом film_likes, фильм и его лайки не загружаются
     @Override
     public boolean addLikeToFilm(long filmId, long userId) {
-        Film film = super.getFilm(filmId);
-
-        if (userStorage.userExist(userId) && film.addLike(userId)) {
-            likesDAO.addLike(filmId, userId);
+        if (filmStorage.filmExist(filmId) && userStorage.userExist(userId) && addLike(filmId, userId)) {
             log.info("Добавлен like фильму {} от пользователя с id = {}", filmId, userId);
             return true;
         }
@@ -39,10 +57,7 @@ public class DbFilmService extends DefaultFilmService {
 
     @Override
     public boolean removeLikeFromFilm(long filmId, long userId) {
-        Film film = super.getFilm(filmId);
-
-        if (userStorage.userExist(userId) && film.deleteLike(userId)) {
-            likesDAO.removeLike(filmId, userId);
+        if (filmStorage.filmExist(filmId) && userStorage.userExist(userId) && removeLike(filmId, userId)) {
             log.info("Удален like у фильма id = {} от пользователя с id = {}", filmId, userId);
             return true;
         }
@@ -51,4 +66,60 @@ public class DbFilmService extends DefaultFilmService {
                 filmId, userId);
         throw new StorageException("Невозможно удалить like");
     }
+
+    // Лайкнувшие пользователи берутся из индекса лайков по возрастанию id
+    @Override
+    public List<Long> getFilmLikes(long filmId) {
+        if (filmStorage.filmExist(filmId)) {
+            return likeIndex.getFilmLikes(filmId).toIdList();
+        }
+
+        log.warn("Ошибка получения лайков, фильма id = {} не существует", filmId);
+        throw new StorageException("Фильма не существует");
+    }
+
+    // Рекомендации по матрице похожих фильмов, фильмы загружаются одним запросом
+    @Override
+    public List<Film> getRecommendedFilms(long userId, int count) {
+        if (userStorage.userExist(userId)) {
+            return filmStorage.getFilms(Arrays.stream(similarityIndex.recommend(userId, count)).boxed()
+                    .collect(Collectors.toList()));
+        }
+
+        log.warn("Ошибка получения рекомендаций фильмов, пользователя id = {} не существует", userId);
+        throw new StorageException("Пользователя не существует");
+    }
+
+    // Запись лайка и изменение индексов под блокировкой пары, чтобы индексы менялись в порядке записи в БД
+    private boolean addLike(long filmId, long userId) {
+        return likeLocks.withLock(pair(filmId, userId), () -> {
+            try {
+                if (!likesDAO.addLike(filmId, userId)) {
+                    return false;
+                }
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+            leaderboard.addLike(filmId);
+            likeIndex.addLike(filmId, userId);
+            similarityIndex.markChanged(filmId);
+            return true;
+        });
+    }
+
+    private boolean removeLike(long filmId, long userId) {
+        return likeLocks.withLock(pair(filmId, userId), () -> {
+            if (!likesDAO.removeLike(filmId, userId)) {
+                return false;
+            }
+            leaderboard.removeLike(filmId);
+            likeIndex.removeLike(filmId, userId);
+            similarityIndex.markChanged(filmId);
+            return true;
+        });
+    }
+
+    private static long pair(long filmId, long userId) {
+        return filmId * 31 + userId;
+    }
 }
\ No newline at end of file
@@ -5,11 +5,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.user.FriendshipDAO;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendRecommender;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 import ru.yandex.practicum.filmorate.util.StorageException;
 import ru.yandex.practicum.filmorate.util.ValidationException;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -19,18 +22,22 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DbUserService extends DefaultUserService {
     private final FriendshipDAO friendshipStorage;
+    private final FriendGraph friendGraph;
+    private final FriendRecommender friendRecommender;
 
     @Autowired
-    public DbUserService(UserStorage userStorage, FriendshipDAO friendshipStorage) {
+    public DbUserService(UserStorage userStorage, FriendshipDAO friendshipStorage, FriendGraph friendGraph,
+                         FriendRecommender friendRecommender) {
         super(userStorage);
         this.friendshipStorage = friendshipStorage;
+        this.friendGraph = friendGraph;
+        this.friendRecommender = friendRecommender;
     }
 
+    // Друзья берутся из графа друзей, из БД читаются только сами пользователи
     @Override
     public List<User> getUserFriends(long id) {
-        return friendshipStorage.getFriends(id).keySet().stream()
-                .map(super::getUser)
-                .collect(Collectors.toList());
+        return userStorage.getUsers(toIdList(friendGraph.getFriends(id)));
     }
 
     @Override
@@ -39,6 +46,7 @@ public class DbUserService extends DefaultUserService {
             User user = super.getUser(userId);
             if (user.addFriend(friendId, false)) {
                 friendshipStorage.addFriend(userId, friendId);
+                friendGraph.addFriend(userId, friendId);
                 log.info("Пользователь id = {} добавил в друзья пользователя id = {}", userId, friendId);
                 return user;
             } else {
@@ -58,6 +66,7 @@ public class DbUserService extends DefaultUserService {
             User user = super.getUser(userId);
             if (user.removeFriend(friendId)) {
                 friendshipStorage.removeFriend(userId, friendId);
+                friendGraph.removeFriend(userId, friendId);
                 log.info("Пользователь id = {} удалил из друзей пользователя id = {}", userId, friendId);
                 return "Пользователь удален из друзей";
             } else {
@@ -75,6 +84,7 @@ public class DbUserService extends DefaultUserService {
     public User confirmFriendship(Long userId, Long friendId) {
         if (checkIds(userId, friendId)) {
             if (friendshipStorage.confirmFriendship(userId, friendId)) {
+                friendGraph.confirmFriendship(userId, friendId);
                 return super.getUser(userId);
             } else {
                 log.warn("Ошибка операции. Нет записи о дружбе id = {} и/или id = {}", userId, friendId);
@@ -88,9 +98,22 @@ public class DbUserService extends DefaultUserService {
 
     @Override
     public List<User> getMutualFriends(long userId, long friendId) {
-        return friendshipStorage.getMutualFriends(userId, friendId).stream()
-                .map(super::getUser)
-                .collect(Collectors.toList());
+        return userStorage.getUsers(toIdList(friendGraph.getMutualFriends(userId, friendId)));
+    }
+
+    // Рекомендации считаются по графу друзей в памяти с ограничением работы на запрос
+    @Override
+    public List<User> getRecommendations(long id, int count) {
+        if (userStorage.userExist(id)) {
+            return getUsersInOrder(toIdList(friendRecommender.recommend(id, count)));
+        }
+
+        log.warn("Ошибка получения рекомендаций, пользователя id = {} не существует", id);
+        throw new StorageException("Пользователя не существует");
+    }
+
+    private static List<Long> toIdList(long[] ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
     }
 
     private boolean checkIds(long userId, long friendId) {
@@ -3,16 +3,30 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.index.TopK;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.util.PageCursor;
 import ru.yandex.practicum.filmorate.util.StorageException;
 import ru.yandex.practicum.filmorate.util.ValidationException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -20,6 +34,9 @@ public class DefaultFilmService implements FilmService {
     private static final LocalDate MIN_DATE = LocalDate.of(1895, 12, 28);
     protected final FilmStorage filmStorage;
     protected final UserStorage userStorage;
+    // Фильмы, которые лайкнул пользователь, - обратный индекс к лайкам фильмов для рекомендаций без обхода
+    // каталога. Может отставать от лайков фильма, при чтении проверяется по множеству лайкнувших
+    private final Map<Long, Set<Long>> likedFilms = new ConcurrentHashMap<>();
 
     @Autowired
     public DefaultFilmService(FilmStorage filmStorage, UserStorage userStorage) {
@@ -35,6 +52,7 @@ public class DefaultFilmService implements FilmService {
         Optional<Film> filmOptional = filmStorage.saveFilm(film);
         if (filmOptional.isPresent()) {
             log.info("film: {} успешно создан", film);
+            indexLikes(filmOptional.get());
             return filmOptional.get();
         }
 
@@ -47,10 +65,12 @@ public class DefaultFilmService implements FilmService {
         checkSpace(film);
         checkDateFilm(film);
 
-        if (film.getId() >= 0 && filmStorage.updateFilm(film).isPresent()) {
+        Optional<Film> filmOptional = film.getId() >= 0 ? filmStorage.updateFilm(film) : Optional.empty();
+        if (filmOptional.isPresent()) {
 
             log.info("film успешно обновлен: {}", film);
-            Film updatedFilm = getFromStorage(film.getId());
+            Film updatedFilm = filmOptional.get();
+            indexLikes(updatedFilm);
 
             // Проверка из-за теста Film update remove genre где требуется получить пустой массив
             // При этом остальные тесты проверяют на null
@@ -67,7 +87,9 @@ public class DefaultFilmService implements FilmService {
 
     @Override
     public String deleteFilm(long id) {
+        Optional<Film> film = filmStorage.getFilm(id);
         if (filmStorage.deleteFilm(id)) {
+            film.ifPresent(deleted -> deleted.getLikesByUsers().forEach(userId -> unindexLike(id, userId)));
             log.info("film c id = {} удален", id);
             return "Фильм удален";
         }
@@ -86,11 +108,31 @@ public class DefaultFilmService implements FilmService {
         return filmStorage.getFilms();
     }
 
+    // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+    @Override
+    public Page<Film> getFilmsPage(String after, int limit) {
+        List<Film> films = filmStorage.getFilmsPage(PageCursor.decode(after), limit + 1);
+        if (films.size() > limit) {
+            films = films.subList(0, limit);
+            return new Page<>(films, PageCursor.encode(films.get(limit - 1).getId()));
+        }
+        return new Page<>(films, null);
+    }
+
+    // Фильмы передаются в action по одному по мере чтения из хранилища
+    @Override
+    public void exportFilms(Consumer<Film> action) {
+        log.info("Начата выгрузка всех фильмов");
+        filmStorage.forEachFilm(action);
+        log.info("Выгрузка всех фильмов завершена");
+    }
+
     @Override
     public boolean addLikeToFilm(long filmId, long userId) {
         Film film = getFromStorage(filmId);
 
         if (userStorage.userExist(userId) && film.addLike(userId)) {
+            indexLike(filmId, userId);
             log.info("Добавлен like фильму {} от пользователя с id = {}", filmId, userId);
             return true;
         }
@@ -105,6 +147,7 @@ public class DefaultFilmService implements FilmService {
         Film film = getFromStorage(filmId);
 
         if (userStorage.userExist(userId) && film.deleteLike(userId)) {
+            unindexLike(filmId, userId);
             log.info("Удален like у фильма id = {} от пользователя с id = {}", filmId, userId);
             return true;
         }
@@ -114,19 +157,119 @@ public class DefaultFilmService implements FilmService {
         throw new StorageException("Невозможно удалить like");
     }
 
+    @Override
+    public List<Long> getFilmLikes(long filmId) {
+        return new ArrayList<>(getFromStorage(filmId).getLikesByUsers());
+    }
+
     @Override
     public List<Film> getTopFilms(Integer count) {
         return filmStorage.getTopFilms(count);
     }
 
-    private void checkNonexistentId(Film film) {
+    @Override
+    public List<Film> searchFilms(String query, int count) {
+        return filmStorage.searchFilms(query, count);
+    }
+
+    @Override
+    public FilmCatalog getFilmsCatalog(FilmFilter filter, int count) {
+        if (filter.getYearFrom() != null && filter.getYearTo() != null && filter.getYearFrom() > filter.getYearTo()) {
+            log.warn("Ошибка фильтра каталога, yearFrom = {} больше yearTo = {}", filter.getYearFrom(),
+                    filter.getYearTo());
+            throw new ValidationException("Начальный год больше конечного");
+        }
+        return filmStorage.filterFilms(filter, count);
+    }
+
+    // Фильмы, которые пользователь не лайкал, по убыванию суммы сходства с понравившимися ему фильмами,
+    // при равенстве по возрастанию id. Сходство - косинусная мера множеств лайкнувших пользователей.
+    // Кандидаты - только фильмы, которые лайкали лайкнувшие те же фильмы пользователи
+    @Override
+    public List<Film> getRecommendedFilms(long userId, int count) {
+        if (!userStorage.userExist(userId)) {
+            log.warn("Ошибка получения рекомендаций фильмов, пользователя id = {} не существует", userId);
+            throw new StorageException("Пользователя не существует");
+        }
+
+        List<Film> liked = filmStorage.getFilms(likedFilms.getOrDefault(userId, Set.of())).stream()
+                .filter(film -> film.getLikesByUsers().contains(userId))
+                .collect(Collectors.toList());
+        Set<Long> candidatesId = new HashSet<>();
+        for (Film likedFilm : liked) {
+            for (Long likerId : likedFilm.getLikesByUsers()) {
+                if (likerId != userId) {
+                    candidatesId.addAll(likedFilms.getOrDefault(likerId, Set.of()));
+                }
+            }
+        }
+
+        TopK top = new TopK(count);
+        Map<Long, Film> candidates = new HashMap<>();
+        for (Film film : filmStorage.getFilms(candidatesId)) {
+            Set<Long> likers = film.getLikesByUsers();
+            if (likers.contains(userId)) {
+                continue;
+            }
+            double score = 0;
+            for (Film likedFilm : liked) {
+                int common = commonCount(likers, likedFilm.getLikesByUsers());
+                if (common > 0) {
+                    score += common / Math.sqrt((double) likers.size() * likedFilm.getLikesByUsers().size());
+                }
+            }
+            if (score > 0) {
+                top.offer(film.getId(), score);
+                candidates.put(film.getId(), film);
+            }
+        }
+
+        return Arrays.stream(top.toArray())
+                .mapToObj(candidates::get)
+                .collect(Collectors.toList());
+    }
+
+    private void indexLikes(Film film) {
+        film.getLikesByUsers().forEach(userId -> indexLike(film.getId(), userId));
+    }
+
+    private void indexLike(long filmId, long userId) {
+        likedFilms.compute(userId, (id, films) -> {
+            Set<Long> updated = films != null ? films : ConcurrentHashMap.newKeySet();
+            updated.add(filmId);
+            return updated;
+        });
+    }
+
+    private void unindexLike(long filmId, long userId) {
+        likedFilms.computeIfPresent(userId, (id, films) -> {
+            films.remove(filmId);
+            return films.isEmpty() ? null : films;
+        });
+    }
+
+    // Размер пересечения, проходом по меньшему множеству
+    private static int commonCount(Set<Long> first, Set<Long> second) {
+        Set<Long> smaller = first.size() <= second.size() ? first : second;
+        Set<Long> larger = smaller == first ? second : first;
+        int common = 0;
+        for (Long id : smaller) {
+            if (larger.contains(id)) {
+                common++;
+            }
+        }
+        return common;
+    }
+
+    // Проверки используются также при загрузке фильмов в FilmImportService
+    static void checkNonexistentId(Film film) {
         if (film.getId() > 0) {
             log.warn("Ошибка создания фильма, получен фильм с изначально заданным id");
             throw new ValidationException("Ошибка создания фильма, неверный формат id");
         }
     }
 
-    private void checkSpace(Film film) {
+    static void checkSpace(Film film) {
         if (film.getName().startsWith(" ")) {
             film.setName(film.getName().trim());
         }
@@ -138,7 +281,7 @@ public class DefaultFilmService implements FilmService {
         }
     }
 
-    private void checkDateFilm(Film film) {
+    static void checkDateFilm(Film film) {
         if (film.getReleaseDate().isBefore(MIN_DATE)) {
             log.warn("Время выпуска фильма меньше минимальной даты: 28-12-1895 film: {}", film);
             throw new ValidationException("Время выпуска фильма меньше минимальной даты: 28-12-1895");
@@ -3,25 +3,40 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.FriendSet;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.util.PageCursor;
 import ru.yandex.practicum.filmorate.util.StorageException;
 import ru.yandex.practicum.filmorate.util.ValidationException;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class DefaultUserService implements UserService {
+    private static final int FRIENDSHIP_LOCKS = 64;
     protected final UserStorage userStorage;
+    // Изменения одной пары пользователей выполняются под общей блокировкой, чтобы обе стороны дружбы
+    // менялись вместе. Чтение друзей блокировку не берет
+    private final Object[] friendshipLocks = new Object[FRIENDSHIP_LOCKS];
 
     @Autowired
     public DefaultUserService(UserStorage userStorage) {
         this.userStorage = userStorage;
+        for (int i = 0; i < FRIENDSHIP_LOCKS; i++) {
+            friendshipLocks[i] = new Object();
+        }
     }
 
     @Override
@@ -74,39 +89,71 @@ public class DefaultUserService implements UserService {
         return users;
     }
 
+    // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
     @Override
-    public List<User> getUserFriends(long id) {
-        User user = getFromStorage(id);
-        List<User> friends = new ArrayList<>();
-
-        for (long friendId : user.getFriendsId()) {
-            userStorage.getUser(friendId).ifPresent(friends::add);
+    public Page<User> getUsersPage(String after, int limit) {
+        List<User> users = userStorage.getUsersPage(PageCursor.decode(after), limit + 1);
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            return new Page<>(users, PageCursor.encode(users.get(limit - 1).getId()));
         }
+        return new Page<>(users, null);
+    }
 
-        return friends;
+    // Пользователи передаются в action по одному по мере чтения из хранилища
+    @Override
+    public void exportUsers(Consumer<User> action) {
+        log.info("Начата выгрузка всех пользователей");
+        userStorage.forEachUser(action);
+        log.info("Выгрузка всех пользователей завершена");
+    }
+
+    @Override
+    public List<User> getUserFriends(long id) {
+        return userStorage.getUsers(getFromStorage(id).getFriendsId());
     }
 
     @Override
     public List<User> getMutualFriends(long userId, long friendId) {
-        User user = getFromStorage(userId);
-        List<Long> userFriends = user.getFriendsId();
+        FriendSet userFriends = getFromStorage(userId).getFriendSet();
+        FriendSet friendFriends = getFromStorage(friendId).getFriendSet();
 
-        User friend = getFromStorage(friendId);
-        List<Long> friendFriends = friend.getFriendsId();
+        return userStorage.getUsers(Arrays.stream(userFriends.intersect(friendFriends))
+                .boxed()
+                .collect(Collectors.toList()));
+    }
 
-        return userFriends.stream()
-                .filter(friendFriends::contains)
-                .map(this::getFromStorage)
-                .collect(Collectors.toList());
+    // Пользователи, которые не являются друзьями, по убыванию числа общих друзей, при равенстве по возрастанию id
+    @Override
+    public List<User> getRecommendations(long id, int count) {
+        FriendSet friends = getFromStorage(id).getFriendSet();
+        Map<Long, Integer> mutualCounts = new HashMap<>();
+
+        for (User friend : userStorage.getUsers(friends.toIdList())) {
+            for (long candidateId : friend.getFriendSet().toArray()) {
+                if (candidateId != id && !friends.contains(candidateId)) {
+                    mutualCounts.merge(candidateId, 1, Integer::sum);
+                }
+            }
+        }
+
+        return getUsersInOrder(mutualCounts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList()));
     }
 
     @Override
     public User addToFriends(long userId, long friendId) {
         if (!Objects.equals(userId, friendId)) {
-            if (getFromStorage(userId).addFriend(friendId, true) &&
-                    getFromStorage(friendId).addFriend(userId, true)) {
+            User user = getFromStorage(userId);
+            User friend = getFromStorage(friendId);
+            if (changeFriendship(userId, friendId, () -> user.addFriend(friendId, true),
+                    () -> friend.addFriend(userId, true))) {
                 log.info("Пользователи id = {} и id = {} взаимно добавлены в друзья", userId, friendId);
-                return getFromStorage(friendId);
+                return friend;
             } else {
                 log.info("Неудачное добавление в друзья, пользователи " +
                         "id = {} и id = {} уже ими являются", userId, friendId);
@@ -121,8 +168,10 @@ public class DefaultUserService implements UserService {
     @Override
     public String removeFromFriends(long userId, long friendId) {
         if (!Objects.equals(userId, friendId)) {
-            if (getFromStorage(userId).removeFriend(friendId) &&
-                    getFromStorage(friendId).removeFriend(userId)) {
+            User user = getFromStorage(userId);
+            User friend = getFromStorage(friendId);
+            if (changeFriendship(userId, friendId, () -> user.removeFriend(friendId),
+                    () -> friend.removeFriend(userId))) {
                 log.info("Пользователи id = {} и id = {} взаимно удалены из друзей", userId, friendId);
                 return "Пользователь удален из друзей";
             } else {
@@ -146,6 +195,20 @@ public class DefaultUserService implements UserService {
         return null;
     }
 
+    // Вторая сторона меняется, только если изменилась первая. Под блокировкой пары стороны всегда согласованы,
+    // поэтому из параллельных одинаковых операций успешна ровно одна
+    private boolean changeFriendship(long userId, long friendId, BooleanSupplier userSide,
+                                     BooleanSupplier friendSide) {
+        long pair = Math.min(userId, friendId) * 31 + Math.max(userId, friendId);
+        synchronized (friendshipLocks[(int) Math.floorMod(pair, (long) FRIENDSHIP_LOCKS)]) {
+            if (userSide.getAsBoolean()) {
+                friendSide.getAsBoolean();
+                return true;
+            }
+            return false;
+        }
+    }
+
     private void checkLoginAndName(User user) {
         String userName = user.getName();
         if (userName == null || userName.isEmpty()) {
@@ -164,6 +227,16 @@ public class DefaultUserService implements UserService {
         }
     }
 
+    // Пользователи в порядке переданных id, хранилище возвращает их упорядоченными по id
+    protected List<User> getUsersInOrder(List<Long> usersId) {
+        Map<Long, User> users = userStorage.getUsers(usersId).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return usersId.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     private User getFromStorage(long id) {
         return userStorage.getUser(id).orElseThrow(
                 () -> new StorageException("Пользователя не существует",
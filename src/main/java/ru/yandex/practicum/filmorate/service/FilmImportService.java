@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.util.ValidationException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Загрузка фильмов из NDJSON. Каждая строка проверяется по тем же правилам, что и в POST /films,
+ * корректные фильмы сохраняются порциями по chunkSize, каждая порция - одна транзакция
+ */
+@Service
+@Slf4j
+public class FilmImportService {
+    private final FilmStorage filmStorage;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+
+    @Autowired
+    public FilmImportService(FilmStorage filmStorage, ObjectMapper objectMapper, Validator validator,
+                             @Value("${filmorate.import.chunk-size:1000}") int chunkSize) {
+        this.filmStorage = filmStorage;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportReport importFilms(InputStream in) throws IOException {
+        ImportReport report = new ImportReport();
+        List<Film> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkLines = new ArrayList<>(chunkSize);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            try {
+                chunk.add(parseFilm(line));
+                chunkLines.add(lineNumber);
+            } catch (ValidationException e) {
+                report.addError(lineNumber, e.getMessage());
+            }
+
+            if (chunk.size() == chunkSize) {
+                saveChunk(chunk, chunkLines, report);
+                chunk.clear();
+                chunkLines.clear();
+            }
+        }
+        saveChunk(chunk, chunkLines, report);
+
+        log.info("Загрузка фильмов завершена, сохранено: {}, отклонено: {}", report.getImported(), report.getFailed());
+        return report;
+    }
+
+    private Film parseFilm(String line) {
+        Film film;
+        try {
+            film = objectMapper.readValue(line, Film.class);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Неверный формат JSON: " + e.getOriginalMessage());
+        }
+
+        if (film == null) {
+            throw new ValidationException("Получен null вместо фильма");
+        }
+
+        Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+
+        if (film.getReleaseDate() == null) {
+            throw new ValidationException("Не задана дата выхода фильма");
+        }
+
+        if (film.getMpa() == null) {
+            throw new ValidationException("Не задан рейтинг MPA");
+        }
+
+        DefaultFilmService.checkDateFilm(film);
+        DefaultFilmService.checkNonexistentId(film);
+        DefaultFilmService.checkSpace(film);
+        return film;
+    }
+
+    // Ошибка одной строки откатывает всю порцию. В этом случае порция сохраняется по одному фильму,
+    // чтобы сохранить корректные фильмы и указать строки с ошибкой
+    private void saveChunk(List<Film> films, List<Long> lines, ImportReport report) {
+        if (films.isEmpty()) {
+            return;
+        }
+
+        try {
+            report.addImported(filmStorage.saveFilms(films).size());
+            return;
+        } catch (DataAccessException e) {
+            log.warn("Ошибка сохранения порции фильмов, сохраняем по одному: {}", e.getMostSpecificCause().getMessage());
+        }
+
+        for (int i = 0; i < films.size(); i++) {
+            try {
+                report.addImported(filmStorage.saveFilms(List.of(films.get(i))).size());
+            } catch (DataAccessException e) {
+                report.addError(lines.get(i), "Ошибка сохранения фильма: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package ru.yandex.practicum.filmorate.service;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Page;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface FilmService {
     Film createFilm(Film film);
@@ -16,9 +20,21 @@ public interface FilmService {
 
     List<Film> getFilms();
 
+    Page<Film> getFilmsPage(String after, int limit);
+
+    void exportFilms(Consumer<Film> action);
+
     boolean addLikeToFilm(long FilmId, long UserId);
 
     boolean removeLikeFromFilm(long FilmId, long UserId);
 
+    List<Long> getFilmLikes(long filmId);
+
     List<Film> getTopFilms(Integer count);
+
+    List<Film> getRecommendedFilms(long userId, int count);
+
+    List<Film> searchFilms(String query, int count);
+
+    FilmCatalog getFilmsCatalog(FilmFilter filter, int count);
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
     User createUser(User user);
@@ -13,10 +15,16 @@ public interface UserService {
 
     List<User> getUsers();
 
+    Page<User> getUsersPage(String after, int limit);
+
+    void exportUsers(Consumer<User> action);
+
     List<User> getUserFriends(long id);
 
     List<User> getMutualFriends(long userId, long friendId);
 
+    List<User> getRecommendations(long id, int count);
+
     User addToFriends(long userId, long friendId);
 
     String removeFromFriends(long userId, long friendId);
@@ -1,20 +1,38 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Optional<Film> saveFilm(Film film);
 
+    List<Film> saveFilms(List<Film> films);
+
     Optional<Film> updateFilm(Film film);
 
     Optional<Film> getFilm(long id);
 
     boolean deleteFilm(long id);
 
+    boolean filmExist(long id);
+
     List<Film> getFilms();
 
+    List<Film> getFilms(Collection<Long> filmsId);
+
+    List<Film> getFilmsPage(long afterId, int limit);
+
     List<Film> getTopFilms(int count);
+
+    List<Film> searchFilms(String query, int count);
+
+    FilmCatalog filterFilms(FilmFilter filter, int count);
+
+    void forEachFilm(Consumer<Film> action);
 }
@@ -1,37 +1,77 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.util.KeyLocks;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Хранилище фильмов в памяти, безопасное при параллельных запросах. Чтение не блокируется,
+ * фильмы упорядочены по id, поэтому страницы читаются без сортировки. Поиск по тексту и каталог
+ * с фильтрами идут по своим индексам
+ */
 @Component
 public class InMemoryFilmStorage implements FilmStorage {
-    private static int idCounter = 1;
-    private final Map<Long, Film> films = new HashMap<>();
+    private static final int FILM_LOCKS = 64;
+    private final AtomicLong idCounter = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private final FilmFacetIndex facetIndex = new FilmFacetIndex();
+    // Изменение фильма и индексов по нему выполняется под блокировкой фильма, поэтому индексы меняются
+    // в том же порядке, что и фильмы. Чтение блокировку не берет
+    private final KeyLocks filmLocks = new KeyLocks(FILM_LOCKS);
 
     @Override
     public Optional<Film> saveFilm(Film film) {
         if (film.getId() == 0) {
-            film.setId(idCounter++);
-            films.put(film.getId(), film);
-            return Optional.of(film);
+            film.setId(idCounter.incrementAndGet());
+            return filmLocks.withLock(film.getId(), () -> {
+                films.put(film.getId(), film);
+                index(film);
+                return Optional.of(film);
+            });
         }
         return Optional.empty();
     }
 
     @Override
-    public Optional<Film> updateFilm(Film film) {
-        if (films.containsKey(film.getId())) {
-            films.put(film.getId(), film);
-            return Optional.of(film);
+    public List<Film> saveFilms(List<Film> films) {
+        List<Film> saved = new ArrayList<>();
+        for (Film film : films) {
+            saveFilm(film).ifPresent(saved::add);
         }
-        return Optional.empty();
+        return saved;
+    }
+
+    // Новая версия фильма получает лайки предыдущей и атомарно заменяет ее
+    @Override
+    public Optional<Film> updateFilm(Film film) {
+        return filmLocks.withLock(film.getId(), () -> {
+            Optional<Film> updated = Optional.ofNullable(films.computeIfPresent(film.getId(), (id, previous) -> {
+                film.takeLikesFrom(previous);
+                return film;
+            }));
+            updated.ifPresent(this::index);
+            return updated;
+        });
     }
 
     @Override
@@ -41,11 +81,19 @@ public class InMemoryFilmStorage implements FilmStorage {
 
     @Override
     public boolean deleteFilm(long id) {
-        if (films.containsKey(id)) {
-            films.remove(id);
-            return true;
-        }
-        return false;
+        return filmLocks.withLock(id, () -> {
+            if (films.remove(id) != null) {
+                searchIndex.remove(id);
+                facetIndex.remove(id);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public boolean filmExist(long id) {
+        return films.containsKey(id);
     }
 
     @Override
@@ -53,16 +101,60 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> getFilms(Collection<Long> filmsId) {
+        return filmsId.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    // Число лайков читается один раз до сортировки, иначе параллельный лайк нарушит порядок сравнения
     @Override
     public List<Film> getTopFilms(int count) {
         return films.values().stream()
-                .sorted((film1, film2) -> {
-                    if (film1.getLikesNumber() > film2.getLikesNumber()) {
-                        return -1;
-                    }
-                    return 1;
-                })
+                .map(film -> Map.entry(film, film.getLikesNumber()))
+                .sorted(Map.Entry.<Film, Integer>comparingByValue(Comparator.reverseOrder()))
                 .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, int count) {
+        return getFilms(Arrays.stream(searchIndex.search(query, count)).boxed().collect(Collectors.toList()));
+    }
+
+    // Удаленный после фильтрации фильм считается фильмом без лайков и не попадает в результат
+    @Override
+    public FilmCatalog filterFilms(FilmFilter filter, int count) {
+        FilmFacetIndex.Result result = facetIndex.filter(filter);
+        long[] filmsId = FilmFacetIndex.select(result.getFilms(), count, filter.isPopular() ? id -> {
+            Film film = films.get(id);
+            return film != null ? film.getLikesNumber() : 0;
+        } : null);
+        return new FilmCatalog(getFilms(Arrays.stream(filmsId).boxed().collect(Collectors.toList())),
+                result.getFilms().cardinality(), result.getFacets());
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        films.values().forEach(action);
+    }
+
+    private void index(Film film) {
+        List<Integer> genresId = film.getGenres() == null ? List.of() : film.getGenres().stream()
+                .map(Genre::getId)
                 .collect(Collectors.toList());
+        searchIndex.put(film.getId(), film.getName(), film.getDescription());
+        facetIndex.put(film.getId(), genresId, film.getMpa() != null ? film.getMpa().getId() : null,
+                film.getReleaseDate());
     }
-}
\ No newline at end of file
+}
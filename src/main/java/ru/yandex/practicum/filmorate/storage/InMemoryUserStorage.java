@@ -5,44 +5,48 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * Хранилище пользователей в памяти, безопасное при параллельных запросах. Чтение не блокируется,
+ * пользователи упорядочены по id, поэтому страницы читаются без сортировки
+ */
 @Component
 @Slf4j
 public class InMemoryUserStorage implements UserStorage {
-    private static int idCounter = 1;
-    private final Map<Long, User> users = new HashMap<>();
+    private final AtomicLong idCounter = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
 
     @Override
     public Optional<User> createUser(User user) {
         if (user.getId() == 0) {
-            user.setId(idCounter++);
+            user.setId(idCounter.incrementAndGet());
             users.put(user.getId(), user);
             return Optional.of(user);
         }
         return Optional.empty();
     }
 
+    // Новая версия пользователя получает друзей предыдущей и атомарно заменяет ее
     @Override
     public boolean updateUser(User user) {
-        if (users.containsKey(user.getId())) {
-            users.put(user.getId(), user);
-            return true;
-        }
-        return false;
+        return users.computeIfPresent(user.getId(), (id, previous) -> {
+            user.takeFriendsFrom(previous);
+            return user;
+        }) != null;
     }
 
     @Override
     public boolean deleteUser(long id) {
-        if (users.containsKey(id)) {
-            users.remove(id);
-            return true;
-        } else {
-            return false;
-        }
+        return users.remove(id) != null;
     }
 
     @Override
@@ -50,13 +54,33 @@ public class InMemoryUserStorage implements UserStorage {
         return Optional.ofNullable(users.get(userId));
     }
 
+    @Override
+    public List<User> getUsers(Collection<Long> usersId) {
+        return usersId.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<User> getAllUsers() {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public boolean userExist(long id) {
         return users.containsKey(id);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        users.values().forEach(action);
+    }
+}
@@ -2,8 +2,10 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Optional<User> createUser(User user);
@@ -14,7 +16,13 @@ public interface UserStorage {
 
     Optional<User> getUser(long userId);
 
+    List<User> getUsers(Collection<Long> usersId);
+
     List<User> getAllUsers();
 
+    List<User> getUsersPage(long afterId, int limit);
+
     boolean userExist(long id);
+
+    void forEachUser(Consumer<User> action);
 }
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Блокировки по id: id распределяются по фиксированному числу блокировок, разные id могут делить одну.
+ * Используются, чтобы изменения одной записи и индексов по ней выполнялись в одном порядке
+ */
+public final class KeyLocks {
+    private final ReentrantLock[] locks;
+
+    public KeyLocks(int size) {
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(long id, Supplier<T> action) {
+        Lock lock = locks[index(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Захват блокировок нескольких id по возрастанию номера блокировки, чтобы параллельные захваты
+    // не ждали друг друга по кругу. Захваченные блокировки добавляются в acquired, освобождает их вызывающий
+    public void lockAll(Collection<Long> ids, List<Lock> acquired) {
+        boolean[] taken = new boolean[locks.length];
+        for (long id : ids) {
+            taken[index(id)] = true;
+        }
+        for (int i = 0; i < locks.length; i++) {
+            if (taken[i]) {
+                locks[i].lock();
+                acquired.add(locks[i]);
+            }
+        }
+    }
+
+    public static void unlockAll(List<Lock> acquired) {
+        for (Lock lock : acquired) {
+            lock.unlock();
+        }
+        acquired.clear();
+    }
+
+    private int index(long id) {
+        return (int) Math.floorMod(id, (long) locks.length);
+    }
+}
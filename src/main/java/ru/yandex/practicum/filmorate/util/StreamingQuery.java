@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Построчное чтение больших запросов (выгрузка, загрузка индексов) курсором порциями по fetchSize строк.
+ * Встроенная H2 по умолчанию собирает весь результат до выдачи первой строки, поэтому на время запроса
+ * на его соединении включается LAZY_QUERY_EXECUTION. Остальные запросы из пула выполняются в обычном режиме
+ */
+public final class StreamingQuery {
+    private StreamingQuery() {
+    }
+
+    public static void query(JdbcTemplate jdbcTemplate, String sql, int fetchSize, RowCallbackHandler handler) {
+        query(jdbcTemplate, sql, fetchSize, (ResultSet rs) -> {
+            while (rs.next()) {
+                handler.processRow(rs);
+            }
+            return null;
+        });
+    }
+
+    public static <T> T query(JdbcTemplate jdbcTemplate, String sql, int fetchSize, ResultSetExtractor<T> extractor) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) con -> {
+            setLazy(con, true);
+            try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(fetchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return extractor.extractData(rs);
+                }
+            } finally {
+                // Соединение возвращается в пул, следующий запрос на нем не должен выполняться лениво
+                setLazy(con, false);
+            }
+        });
+    }
+
+    private static void setLazy(Connection con, boolean lazy) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? 1 : 0));
+        }
+    }
+}
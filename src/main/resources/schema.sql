@@ -28,9 +28,14 @@ CREATE TABLE IF NOT EXISTS films
     description  varchar(300),
     rating       integer REFERENCES rating_mpa (rating_id),
     release_date date        NOT NULL,
-    duration     integer     NOT NULL
+    duration     integer     NOT NULL,
+    likes_count  integer     NOT NULL DEFAULT 0
 );
 
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count integer NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS genre
 (
     genre_id integer GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.RatingMpa;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class DbFilmGenreDAOTest {
+    private final DbFilmGenreDAO filmGenreDAO;
+    private final FilmDbStorage filmDbStorage;
+
+    @BeforeEach
+    void beforeEach() {
+        Film film = new Film("film", "desc", LocalDate.of(2020, 12, 12), 100);
+        film.setMpa(new RatingMpa(1, "G"));
+        filmDbStorage.saveFilm(film);
+    }
+
+    @Test
+    void setGenres() {
+        assertNull(filmGenreDAO.getGenres(1));
+
+        assertTrue(filmGenreDAO.setGenres(1, Set.of(new Genre(1, "Комедия"), new Genre(2, null))));
+        assertEquals(Set.of(1, 2), genreIds(filmGenreDAO.getGenres(1)));
+    }
+
+    @Test
+    void updateGenreChangesOnlyDifference() {
+        filmGenreDAO.setGenres(1, Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        Set<Genre> prev = filmGenreDAO.getGenres(1);
+
+        assertFalse(filmGenreDAO.updateGenre(1, prev, Set.of(new Genre(2, null), new Genre(1, null))));
+        assertEquals(Set.of(1, 2), genreIds(filmGenreDAO.getGenres(1)));
+
+        assertTrue(filmGenreDAO.updateGenre(1, prev, Set.of(new Genre(2, null), new Genre(3, null))));
+        assertEquals(Set.of(2, 3), genreIds(filmGenreDAO.getGenres(1)));
+
+        assertTrue(filmGenreDAO.updateGenre(1, filmGenreDAO.getGenres(1), Set.of()));
+        assertNull(filmGenreDAO.getGenres(1));
+
+        assertTrue(filmGenreDAO.updateGenre(1, null, Set.of(new Genre(6, null))));
+        assertEquals(Set.of(6), genreIds(filmGenreDAO.getGenres(1)));
+    }
+
+    private Set<Integer> genreIds(Set<Genre> genres) {
+        return genres.stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+    }
+}
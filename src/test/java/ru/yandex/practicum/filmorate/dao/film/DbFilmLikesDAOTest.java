@@ -7,13 +7,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.dao.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.RatingMpa;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -29,6 +32,9 @@ class DbFilmLikesDAOTest {
     private final DbFilmLikesDAO dbFilmLikesDAO;
     private final UserDbStorage userDbStorage;
     private final FilmDbStorage filmDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final LikesCountRepairJob repairJob;
+    private final FilmLeaderboard leaderboard;
     private Film film;
     private User user;
 
@@ -98,4 +104,85 @@ class DbFilmLikesDAOTest {
         assertEquals(List.of(1L, 4L, 2L, 3L), dbFilmLikesDAO.getTopFilms(10));
         assertEquals(List.of(1L, 4L), dbFilmLikesDAO.getTopFilms(2));
     }
-}
\ No newline at end of file
+
+    @Test
+    void likesCountTest() {
+        filmDbStorage.saveFilm(film);
+        userDbStorage.createUser(user);
+        userDbStorage.createUser(user);
+
+        dbFilmLikesDAO.addLike(1, 1);
+        dbFilmLikesDAO.addLike(1, 2);
+        assertEquals(2, filmDbStorage.getFilm(1).orElseThrow().getLikesCount());
+        assertThrows(DataIntegrityViolationException.class, () -> dbFilmLikesDAO.addLike(1, 1));
+        assertEquals(2, filmDbStorage.getFilm(1).orElseThrow().getLikesCount());
+
+        dbFilmLikesDAO.removeLike(1, 1);
+        dbFilmLikesDAO.removeLike(1, 1);
+        assertEquals(1, filmDbStorage.getFilm(1).orElseThrow().getLikesCount());
+    }
+
+    @Test
+    void saveLikesTest() {
+        filmDbStorage.saveFilm(film);
+        userDbStorage.createUser(user);
+        userDbStorage.createUser(user);
+        dbFilmLikesDAO.addLike(1, 1);
+
+        dbFilmLikesDAO.saveLikes(
+                List.of(new FilmLike(1, 1), new FilmLike(1, 2), new FilmLike(2, 1), new FilmLike(1, 3)),
+                List.of());
+        assertEquals(List.of(1L, 2L), dbFilmLikesDAO.getFilmLikes(1));
+        assertEquals(2, filmDbStorage.getFilm(1).orElseThrow().getLikesCount());
+
+        dbFilmLikesDAO.saveLikes(List.of(), List.of(new FilmLike(1, 1), new FilmLike(1, 3)));
+        assertEquals(List.of(2L), dbFilmLikesDAO.getFilmLikes(1));
+        assertEquals(1, filmDbStorage.getFilm(1).orElseThrow().getLikesCount());
+        assertTrue(dbFilmLikesDAO.likeExist(1, 2));
+        assertFalse(dbFilmLikesDAO.likeExist(1, 1));
+    }
+
+    @Test
+    void recalculateLikesCountTest() {
+        filmDbStorage.saveFilm(film);
+        filmDbStorage.saveFilm(film);
+        userDbStorage.createUser(user);
+        dbFilmLikesDAO.addLike(1, 1);
+        assertEquals(0, dbFilmLikesDAO.recalculateLikesCount());
+
+        jdbcTemplate.update("UPDATE films SET likes_count = 5");
+        assertEquals(2, dbFilmLikesDAO.recalculateLikesCount());
+        assertEquals(1, filmDbStorage.getFilm(1).orElseThrow().getLikesCount());
+        assertEquals(0, filmDbStorage.getFilm(2).orElseThrow().getLikesCount());
+    }
+
+    // Лайк, добавленный в БД в обход приложения, после пересчета попадает и в рейтинг
+    @Test
+    void repairJobReconcilesLeaderboard() {
+        filmDbStorage.saveFilm(film);
+        filmDbStorage.saveFilm(film);
+        userDbStorage.createUser(user);
+        jdbcTemplate.update("INSERT INTO film_likes (film_id, user_id) VALUES (2, 1)");
+        assertEquals(0, leaderboard.getLikes(2));
+
+        repairJob.repair();
+        assertEquals(1, filmDbStorage.getFilm(2).orElseThrow().getLikesCount());
+        assertEquals(1, leaderboard.getLikes(2));
+        assertEquals(List.of(2L), leaderboard.getTopFilms(10));
+    }
+
+    @Test
+    void forEachLikeTest() {
+        filmDbStorage.saveFilm(film);
+        filmDbStorage.saveFilm(film);
+        userDbStorage.createUser(user);
+        userDbStorage.createUser(user);
+        dbFilmLikesDAO.addLike(1, 1);
+        dbFilmLikesDAO.addLike(1, 2);
+        dbFilmLikesDAO.addLike(2, 2);
+
+        List<FilmLike> likes = new ArrayList<>();
+        dbFilmLikesDAO.forEachLike(likes::add);
+        assertEquals(List.of(new FilmLike(1, 1), new FilmLike(1, 2), new FilmLike(2, 2)), likes);
+    }
+}
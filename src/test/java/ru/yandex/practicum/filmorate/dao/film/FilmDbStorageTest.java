@@ -6,18 +6,31 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.dao.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.metrics.QueryCounter;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.RatingMpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.util.StorageException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -34,6 +47,7 @@ class FilmDbStorageTest {
     private final FilmDbStorage filmDbStorage;
     private final DbFilmLikesDAO likesDAO;
     private final UserDbStorage userDbStorage;
+    private final FilmLeaderboard leaderboard;
     private Film film;
 
     @BeforeEach
@@ -61,6 +75,153 @@ class FilmDbStorageTest {
         assertEquals(1, filmWithGenreOptional.get().getGenres().size());
     }
 
+    @Test
+    public void saveFilms() {
+        assertTrue(filmDbStorage.saveFilms(List.of()).isEmpty());
+
+        Film film2 = new Film("film2", "desc", LocalDate.of(2020, 12, 12), 100);
+        film2.setMpa(new RatingMpa(2, "PG"));
+        film2.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+
+        List<Film> saved = filmDbStorage.saveFilms(List.of(film, film2));
+        assertEquals(2, saved.size());
+        assertEquals(1, film.getId());
+        assertEquals(2, film2.getId());
+
+        assertEquals(film, filmDbStorage.getFilm(1).orElse(null));
+        assertEquals(film2, filmDbStorage.getFilm(2).orElse(null));
+    }
+
+    @Test
+    public void savedFilmMatchesStoredFilm() {
+        film.setMpa(new RatingMpa(3, null));
+        film.setGenres(Set.of(new Genre(6, null), new Genre(1, null), new Genre(3, null)));
+
+        Film saved = filmDbStorage.saveFilm(film).orElseThrow();
+        assertEquals(filmDbStorage.getFilm(saved.getId()).orElseThrow(), saved);
+        assertEquals(List.of(1, 3, 6), saved.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList()));
+
+        film.setId(saved.getId());
+        film.setGenres(Set.of(new Genre(2, null)));
+        Film updated = filmDbStorage.updateFilm(film).orElseThrow();
+        assertEquals(filmDbStorage.getFilm(saved.getId()).orElseThrow(), updated);
+    }
+
+    @Test
+    public void updateFilmIsRolledBackOnError() {
+        film.setGenres(Set.of(new Genre(1, "Комедия")));
+        Film saved = filmDbStorage.saveFilm(film).orElseThrow();
+
+        film.setId(saved.getId());
+        film.setName("Update");
+        film.setGenres(Set.of(new Genre(100, null)));
+        assertThrows(DataIntegrityViolationException.class, () -> filmDbStorage.updateFilm(film));
+        assertEquals(saved, filmDbStorage.getFilm(saved.getId()).orElseThrow());
+        assertTrue(filmDbStorage.searchFilms("update", 10).isEmpty());
+    }
+
+    @Test
+    public void filterFilms() {
+        film.setGenres(Set.of(new Genre(1, "Комедия")));
+        Film other = new Film("other", "desc", LocalDate.of(2010, 12, 12), 100);
+        other.setMpa(new RatingMpa(2, "PG"));
+        other.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        Film saved = filmDbStorage.saveFilm(film).orElseThrow();
+        Film savedOther = filmDbStorage.saveFilm(other).orElseThrow();
+
+        FilmFilter filter = new FilmFilter();
+        filter.setGenres(Set.of(1));
+        filter.setMpa(Set.of(2));
+        FilmCatalog catalog = filmDbStorage.filterFilms(filter, 10);
+        assertEquals(List.of(savedOther), catalog.getItems());
+        assertEquals(1, catalog.getTotal());
+        assertEquals(new FilmCatalog.Facets(Map.of(1, 1, 2, 1), Map.of(1, 1, 2, 1), Map.of(2010, 1)),
+                catalog.getFacets());
+
+        // После перезагрузки из БД индекс тот же
+        filmDbStorage.loadIndexes();
+        assertEquals(catalog, filmDbStorage.filterFilms(filter, 10));
+
+        film.setId(saved.getId());
+        film.setMpa(new RatingMpa(2, "PG"));
+        filmDbStorage.updateFilm(film);
+        other.setId(savedOther.getId());
+        other.setMpa(new RatingMpa(1, "G"));
+        filmDbStorage.updateFilm(other);
+        assertEquals(List.of(saved.getId()), filmDbStorage.filterFilms(filter, 10).getItems().stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+    }
+
+    // Индексы меняются в порядке фиксации транзакций: удаленный фильм не возвращается в индекс запоздавшим
+    // обновлением, а из параллельных обновлений в индексе остается последнее сохраненное
+    @Test
+    public void concurrentUpdateAndDeleteKeepIndexesInSync() throws Exception {
+        int count = 200;
+        for (int i = 0; i < count; i++) {
+            filmDbStorage.saveFilm(film);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int mpaId = 2; mpaId <= 3; mpaId++) {
+            RatingMpa mpa = new RatingMpa(mpaId, null);
+            futures.add(executor.submit(() -> {
+                for (long id = 1; id <= count; id++) {
+                    Film updated = new Film("updated", "desc", LocalDate.of(2020, 12, 12), 100);
+                    updated.setId(id);
+                    updated.setMpa(mpa);
+                    filmDbStorage.updateFilm(updated);
+                }
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            for (long id = 1; id <= count; id += 2) {
+                filmDbStorage.deleteFilm(id);
+            }
+        }));
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        Map<Integer, Integer> mpa = new TreeMap<>();
+        filmDbStorage.getFilms().forEach(film -> mpa.merge(film.getMpa().getId(), 1, Integer::sum));
+        FilmCatalog catalog = filmDbStorage.filterFilms(new FilmFilter(), 10);
+        assertEquals(count / 2, catalog.getTotal());
+        assertEquals(mpa, catalog.getFacets().getMpa());
+
+        // Индексы совпадают с построенными заново по БД
+        filmDbStorage.loadIndexes();
+        assertEquals(catalog.getFacets(), filmDbStorage.filterFilms(new FilmFilter(), 10).getFacets());
+    }
+
+    @Test
+    public void searchFilms() {
+        Film other = new Film("Другой фильм", "desc", LocalDate.of(2020, 12, 12), 100);
+        other.setMpa(new RatingMpa(1, "G"));
+        Film saved = filmDbStorage.saveFilm(film).orElseThrow();
+        Film savedOther = filmDbStorage.saveFilms(new ArrayList<>(List.of(other))).get(0);
+        assertEquals(List.of(saved, filmDbStorage.getFilm(savedOther.getId()).orElseThrow()),
+                filmDbStorage.searchFilms("film фильм", 10));
+
+        film.setId(saved.getId());
+        film.setName("Комедия");
+        filmDbStorage.updateFilm(film);
+        assertEquals(List.of(saved.getId()), filmDbStorage.searchFilms("комедия", 10).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+
+        // После перезагрузки из БД индекс тот же
+        filmDbStorage.loadIndexes();
+        assertEquals(1, filmDbStorage.searchFilms("комедия", 10).size());
+
+        filmDbStorage.deleteFilm(saved.getId());
+        assertTrue(filmDbStorage.searchFilms("комедия", 10).isEmpty());
+    }
+
     @Test
     public void saveFilmWithId() {
         film.setId(-1);
@@ -124,6 +285,27 @@ class FilmDbStorageTest {
         }
     }
 
+    @Test
+    public void forEachFilmTest() {
+        List<Film> exported = new ArrayList<>();
+        filmDbStorage.forEachFilm(exported::add);
+        assertTrue(exported.isEmpty());
+
+        filmDbStorage.saveFilm(film);
+        film.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        filmDbStorage.saveFilm(film);
+        film.setGenres(Set.of(new Genre(6, "Боевик")));
+        filmDbStorage.saveFilm(film);
+
+        filmDbStorage.forEachFilm(exported::add);
+        assertEquals(filmDbStorage.getFilms(), exported);
+        assertEquals(2, exported.get(1).getGenres().size());
+        // Жанры в выгрузке упорядочены по id, как в getFilm
+        assertEquals(List.of(1, 2), exported.get(1).getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList()));
+    }
+
     @Test
     public void deleteTest() {
         assertFalse(filmDbStorage.deleteFilm(-1));
@@ -175,6 +357,8 @@ class FilmDbStorageTest {
         likesDAO.addLike(1, 1);
         likesDAO.addLike(1, 2);
         likesDAO.addLike(2, 1);
+        // Лайки добавлены в обход сервиса, загружаем рейтинг из film_likes как при старте
+        leaderboard.load();
 
         film.setId(1);
         film.addLike(1);
@@ -190,4 +374,46 @@ class FilmDbStorageTest {
         List<Film> filmsExpected = List.of(film, film2);
         assertEquals(filmsExpected, filmDbStorage.getTopFilms(10));
     }
-}
\ No newline at end of file
+
+    @Test
+    void likesCountWithoutLikesSet() {
+        filmDbStorage.saveFilm(film);
+        filmDbStorage.saveFilm(film);
+        userDbStorage.createUser(new User("a@mail.ru", "login", "name", LocalDate.of(1990, 10, 10)));
+        userDbStorage.createUser(new User("a@mail.ru", "login", "name", LocalDate.of(1990, 10, 10)));
+        likesDAO.addLike(1, 1);
+        likesDAO.addLike(1, 2);
+
+        Film filmWithLikes = filmDbStorage.getFilm(1).orElseThrow();
+        assertEquals(2, filmWithLikes.getLikesCount());
+        assertTrue(filmWithLikes.getLikesByUsers().isEmpty());
+
+        List<Film> films = filmDbStorage.getFilms();
+        assertEquals(2, films.get(0).getLikesCount());
+        assertEquals(0, films.get(1).getLikesCount());
+    }
+
+    @Test
+    void queriesCountDoesNotDependOnFilmsCount() {
+        userDbStorage.createUser(new User("a@mail.ru", "login", "name", LocalDate.of(1990, 10, 10)));
+        film.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+
+        for (int i = 1; i <= 3; i++) {
+            filmDbStorage.saveFilm(film);
+            likesDAO.addLike(i, 1);
+        }
+        long getFilmsQueries = QueryCounter.count(filmDbStorage::getFilms);
+        long getTopFilmsQueries = QueryCounter.count(() -> filmDbStorage.getTopFilms(10));
+        long getFilmQueries = QueryCounter.count(() -> filmDbStorage.getFilm(1));
+        assertEquals(2, getFilmQueries);
+
+        for (int i = 4; i <= 30; i++) {
+            filmDbStorage.saveFilm(film);
+            likesDAO.addLike(i, 1);
+        }
+        assertEquals(30, filmDbStorage.getFilms().size());
+        assertEquals(getFilmsQueries, QueryCounter.count(filmDbStorage::getFilms));
+        assertEquals(getTopFilmsQueries, QueryCounter.count(() -> filmDbStorage.getTopFilms(10)));
+        assertEquals(getFilmQueries, QueryCounter.count(() -> filmDbStorage.getFilm(1)));
+    }
+}
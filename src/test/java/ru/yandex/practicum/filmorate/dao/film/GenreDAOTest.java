@@ -5,14 +5,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -20,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 class GenreDAOTest {
     private final GenreDAO genreDAO;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     void getAllGenres() {
@@ -38,4 +43,17 @@ class GenreDAOTest {
                 .isPresent()
                 .hasValueSatisfying(genre -> assertThat(genre).hasFieldOrPropertyWithValue("id", 1));
     }
-}
\ No newline at end of file
+
+    @Test
+    void cachedGenresAndRefresh() {
+        assertSame(genreDAO.getGenre(1).orElseThrow(), genreDAO.getAllGenres().get(0));
+        assertEquals(6, genreDAO.getAllGenres().size());
+
+        jdbcTemplate.update("INSERT INTO genre (genre) VALUES ('Ужасы')");
+        assertTrue(genreDAO.getGenre(7).isEmpty());
+
+        genreDAO.refresh();
+        assertEquals(new Genre(7, "Ужасы"), genreDAO.getGenre(7).orElseThrow());
+        assertEquals(7, genreDAO.getAllGenres().size());
+    }
+}
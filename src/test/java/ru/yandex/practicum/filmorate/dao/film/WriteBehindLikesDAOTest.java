@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.RatingMpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class WriteBehindLikesDAOTest {
+    private final LikesDAO likesDAO;
+    private final WriteBehindLikesDAO writeBehindLikesDAO;
+    private final DbFilmLikesDAO dbFilmLikesDAO;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final FilmLeaderboard leaderboard;
+    private final LikeIndex likeIndex;
+    private final ObjectProvider<FilmLeaderboard> leaderboardProvider;
+    private final ObjectProvider<LikeIndex> likeIndexProvider;
+
+    @BeforeEach
+    void beforeEach() {
+        Film film = new Film("film", "desc", LocalDate.of(2020, 12, 12), 100);
+        film.setMpa(new RatingMpa(1, "G"));
+        filmDbStorage.saveFilm(film);
+        filmDbStorage.saveFilm(film);
+
+        User user = new User("a@mail.ru", "login", "name", LocalDate.of(1990, 10, 10));
+        userDbStorage.createUser(user);
+        userDbStorage.createUser(user);
+    }
+
+    @Test
+    void likesAreWrittenOnFlush() {
+        assertSame(writeBehindLikesDAO, likesDAO);
+
+        assertTrue(filmService.addLikeToFilm(1, 1));
+        assertTrue(likesDAO.addLike(1, 2));
+        assertFalse(likesDAO.addLike(1, 1));
+        assertTrue(likesDAO.likeExist(1, 1));
+        assertEquals(List.of(1L, 2L), likesDAO.getFilmLikes(1));
+        assertEquals(Map.of(1L, 2), likesDAO.getAllLikesCount());
+        assertTrue(dbFilmLikesDAO.getFilmLikes(1).isEmpty());
+
+        writeBehindLikesDAO.flush();
+        assertEquals(0, writeBehindLikesDAO.getPendingCount());
+        assertEquals(List.of(1L, 2L), dbFilmLikesDAO.getFilmLikes(1));
+        assertEquals(2, filmDbStorage.getFilm(1).orElseThrow().getLikesCount());
+        assertEquals(List.of(1L), filmDbStorage.getTopFilms(10).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void oppositeOperationsCancel() {
+        assertTrue(likesDAO.addLike(1, 1));
+        assertTrue(likesDAO.removeLike(1, 1));
+        assertFalse(likesDAO.removeLike(1, 1));
+        assertEquals(0, writeBehindLikesDAO.getPendingCount());
+
+        likesDAO.addLike(2, 1);
+        writeBehindLikesDAO.flush();
+
+        assertTrue(likesDAO.removeLike(2, 1));
+        assertTrue(likesDAO.addLike(2, 1));
+        assertEquals(0, writeBehindLikesDAO.getPendingCount());
+
+        assertTrue(likesDAO.removeLike(2, 1));
+        assertFalse(likesDAO.likeExist(2, 1));
+        assertTrue(likesDAO.getFilmLikes(2).isEmpty());
+        writeBehindLikesDAO.flush();
+        assertTrue(dbFilmLikesDAO.getFilmLikes(2).isEmpty());
+        assertEquals(0, filmDbStorage.getFilm(2).orElseThrow().getLikesCount());
+    }
+
+    @Test
+    void strictDurabilityWaitsForFlush() throws InterruptedException {
+        WriteBehindLikesDAO strict = new WriteBehindLikesDAO(dbFilmLikesDAO, leaderboardProvider, likeIndexProvider,
+                WriteBehindLikesDAO.Durability.STRICT, 3600000, 1000, 50000);
+        strict.start();
+
+        assertTrue(strict.addLike(1, 1));
+        assertEquals(List.of(1L), dbFilmLikesDAO.getFilmLikes(1));
+
+        assertTrue(strict.removeLike(1, 1));
+        assertTrue(dbFilmLikesDAO.getFilmLikes(1).isEmpty());
+        strict.stop();
+    }
+
+    @Test
+    void pendingLikesAreWrittenOnStop() throws InterruptedException {
+        likesDAO.addLike(1, 1);
+        writeBehindLikesDAO.stop();
+        assertEquals(List.of(1L), dbFilmLikesDAO.getFilmLikes(1));
+    }
+
+    @Test
+    void likesAfterStopAreWrittenImmediately() throws InterruptedException {
+        WriteBehindLikesDAO strict = new WriteBehindLikesDAO(dbFilmLikesDAO, leaderboardProvider, likeIndexProvider,
+                WriteBehindLikesDAO.Durability.STRICT, 3600000, 1000, 50000);
+        strict.start();
+        strict.stop();
+
+        assertTrue(strict.addLike(1, 1));
+        assertEquals(List.of(1L), dbFilmLikesDAO.getFilmLikes(1));
+
+        writeBehindLikesDAO.stop();
+        assertTrue(likesDAO.addLike(2, 1));
+        assertEquals(0, writeBehindLikesDAO.getPendingCount());
+        assertEquals(List.of(1L), dbFilmLikesDAO.getFilmLikes(2));
+    }
+
+    @Test
+    void skippedLikesAreRemovedFromLeaderboard() {
+        assertTrue(filmService.addLikeToFilm(1, 1));
+        assertTrue(filmService.addLikeToFilm(1, 2));
+        assertEquals(2, leaderboard.getLikes(1));
+
+        userDbStorage.deleteUser(1);
+        writeBehindLikesDAO.flush();
+
+        assertEquals(List.of(2L), dbFilmLikesDAO.getFilmLikes(1));
+        assertEquals(1, leaderboard.getLikes(1));
+        assertEquals(List.of(2L), likeIndex.getFilmLikes(1).toIdList());
+    }
+
+    // Проверка лайка в БД не держит блокировку пары: второй запрос по той же паре доходит до БД, пока первый ждет
+    @Test
+    void likeCheckRunsOutsidePairLock() throws Exception {
+        CountDownLatch bothChecking = new CountDownLatch(2);
+        AtomicBoolean waitedAlone = new AtomicBoolean();
+        DbFilmLikesDAO slowDAO = mock(DbFilmLikesDAO.class);
+        when(slowDAO.likeExist(anyLong(), anyLong())).thenAnswer(invocation -> {
+            bothChecking.countDown();
+            if (!bothChecking.await(5, TimeUnit.SECONDS)) {
+                waitedAlone.set(true);
+            }
+            return false;
+        });
+        WriteBehindLikesDAO dao = new WriteBehindLikesDAO(slowDAO, leaderboardProvider, likeIndexProvider,
+                WriteBehindLikesDAO.Durability.RELAXED, 3600000, 1000, 50000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(() -> dao.addLike(1, 1));
+            Future<Boolean> second = executor.submit(() -> dao.addLike(1, 1));
+
+            assertTrue(first.get(10, TimeUnit.SECONDS) ^ second.get(10, TimeUnit.SECONDS));
+            assertFalse(waitedAlone.get());
+            assertEquals(1, dao.getPendingCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
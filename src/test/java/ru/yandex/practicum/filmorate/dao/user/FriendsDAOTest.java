@@ -11,6 +11,7 @@ import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -59,6 +60,22 @@ class FriendsDAOTest {
         assertFalse(friendsAdded21.get(1L));
     }
 
+    @Test
+    public void getFriendsOfSeveralUsers() {
+        assertTrue(friendsDAO.getFriends(List.of(1L, 2L)).isEmpty());
+        assertTrue(friendsDAO.getAllFriends().isEmpty());
+
+        friendsDAO.addFriend(1, 2);
+        friendsDAO.addFriend(2, 1);
+        friendsDAO.confirmFriendship(1, 2);
+
+        Map<Long, Map<Long, Boolean>> friends = friendsDAO.getFriends(List.of(1L, 2L, 3L));
+        assertEquals(2, friends.size());
+        assertEquals(Map.of(2L, true), friends.get(1L));
+        assertEquals(Map.of(1L, true), friends.get(2L));
+        assertEquals(friends, friendsDAO.getAllFriends());
+    }
+
     @Test
     public void addWhenIdsEquals() {
         assertThrows(DataIntegrityViolationException.class, () -> friendsDAO.addFriend(1, 1));
@@ -145,4 +162,15 @@ class FriendsDAOTest {
         assertFalse(friendsDAO.getFriends(1).get(2L));
         assertTrue(friendsDAO.getFriends(2).isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void forEachFriendshipInKeyOrder() {
+        friendsDAO.addFriend(2, 1);
+        friendsDAO.addFriend(1, 2);
+        friendsDAO.confirmFriendship(1, 2);
+
+        List<Friendship> friendships = new ArrayList<>();
+        friendsDAO.forEachFriendship(friendships::add);
+        assertEquals(List.of(new Friendship(1, 2, true), new Friendship(2, 1, true)), friendships);
+    }
+}
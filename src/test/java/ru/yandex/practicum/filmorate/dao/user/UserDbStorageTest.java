@@ -11,6 +11,7 @@ import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.util.StorageException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +28,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 class UserDbStorageTest {
     private final UserDbStorage userStorage;
+    private final FriendsDAO friendsDAO;
     private User user;
 
     @BeforeEach
@@ -149,4 +151,51 @@ class UserDbStorageTest {
         userStorage.createUser(user);
         assertTrue(userStorage.userExist(1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getUsersByIdsTest() {
+        assertTrue(userStorage.getUsers(List.of()).isEmpty());
+
+        Optional<User> user1 = userStorage.createUser(user);
+        userStorage.createUser(user);
+        Optional<User> user3 = userStorage.createUser(user);
+
+        List<User> users = userStorage.getUsers(List.of(3L, 1L, 10L));
+
+        assertEquals(2, users.size());
+        assertEquals(user1.orElse(user), users.get(0));
+        assertEquals(user3.orElse(user), users.get(1));
+    }
+
+    @Test
+    public void getUsersPageTest() {
+        assertTrue(userStorage.getUsersPage(0, 10).isEmpty());
+
+        Optional<User> user1 = userStorage.createUser(user);
+        Optional<User> user2 = userStorage.createUser(user);
+        Optional<User> user3 = userStorage.createUser(user);
+
+        assertEquals(List.of(user1.orElse(user), user2.orElse(user)), userStorage.getUsersPage(0, 2));
+        assertEquals(List.of(user3.orElse(user)), userStorage.getUsersPage(2, 2));
+        assertTrue(userStorage.getUsersPage(3, 2).isEmpty());
+    }
+
+    @Test
+    public void forEachUserTest() {
+        List<User> exported = new ArrayList<>();
+        userStorage.forEachUser(exported::add);
+        assertTrue(exported.isEmpty());
+
+        userStorage.createUser(user);
+        userStorage.createUser(user);
+        userStorage.createUser(user);
+        friendsDAO.addFriend(1, 2);
+        friendsDAO.addFriend(1, 3);
+        friendsDAO.addFriend(3, 1);
+
+        userStorage.forEachUser(exported::add);
+        assertEquals(userStorage.getAllUsers(), exported);
+        assertEquals(2, exported.get(0).getFriends().size());
+        assertTrue(exported.get(1).getFriends().isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FilmFacetIndexTest {
+    private FilmFacetIndex facetIndex;
+
+    // Фильм: жанры, рейтинг, год. 1: 1 и 2, G, 2000; 2: 2, PG, 2005; 3: без жанров и рейтинга, 2010; 4: 1, G, 2010
+    @BeforeEach
+    void beforeEach() {
+        facetIndex = new FilmFacetIndex();
+        facetIndex.put(1, List.of(1, 2), 1, LocalDate.of(2000, 1, 1));
+        facetIndex.put(2, List.of(2), 2, LocalDate.of(2005, 6, 1));
+        facetIndex.put(3, List.of(), null, LocalDate.of(2010, 12, 31));
+        facetIndex.put(4, List.of(1), 1, LocalDate.of(2010, 1, 1));
+    }
+
+    @Test
+    void filterWithoutConditionsReturnsAllFilms() {
+        FilmFacetIndex.Result result = facetIndex.filter(new FilmFilter());
+
+        assertEquals(IdBitmap.of(1, 2, 3, 4), result.getFilms());
+        assertEquals(new FilmCatalog.Facets(Map.of(1, 2, 2, 2), Map.of(1, 2, 2, 1),
+                Map.of(2000, 1, 2005, 1, 2010, 2)), result.getFacets());
+    }
+
+    @Test
+    void valuesOfOneFilterAreOrAndFiltersAreAnd() {
+        assertEquals(IdBitmap.of(1, 4), facetIndex.filter(filter(Set.of(1), Set.of(), null, null)).getFilms());
+        assertEquals(IdBitmap.of(1, 4), facetIndex.filter(filter(Set.of(1, 2), Set.of(1), null, null)).getFilms());
+        assertEquals(IdBitmap.of(2), facetIndex.filter(filter(Set.of(1, 2), Set.of(), 2001, 2009)).getFilms());
+        assertEquals(IdBitmap.of(2, 3, 4), facetIndex.filter(filter(Set.of(), Set.of(), 2005, null)).getFilms());
+        assertEquals(IdBitmap.of(1, 2), facetIndex.filter(filter(Set.of(), Set.of(), null, 2005)).getFilms());
+        assertEquals(IdBitmap.EMPTY, facetIndex.filter(filter(Set.of(99), Set.of(), null, null)).getFilms());
+        assertEquals(IdBitmap.EMPTY, facetIndex.filter(filter(Set.of(), Set.of(), 2010, 2000)).getFilms());
+    }
+
+    // Число по значению фильтра считается по остальным фильтрам без него самого
+    @Test
+    void facetsIgnoreOwnFilter() {
+        FilmFacetIndex.Result result = facetIndex.filter(filter(Set.of(1), Set.of(), 2005, null));
+
+        assertEquals(IdBitmap.of(4), result.getFilms());
+        assertEquals(new FilmCatalog.Facets(Map.of(1, 1, 2, 1), Map.of(1, 1), Map.of(2000, 1, 2010, 1)),
+                result.getFacets());
+    }
+
+    @Test
+    void updateAndRemoveFilms() {
+        facetIndex.put(4, List.of(2), 2, LocalDate.of(2020, 1, 1));
+        facetIndex.remove(1);
+        facetIndex.remove(42);
+
+        FilmFacetIndex.Result result = facetIndex.filter(new FilmFilter());
+        assertEquals(IdBitmap.of(2, 3, 4), result.getFilms());
+        assertEquals(new FilmCatalog.Facets(Map.of(2, 2), Map.of(2, 2), Map.of(2005, 1, 2010, 1, 2020, 1)),
+                result.getFacets());
+        assertEquals(3, facetIndex.size());
+    }
+
+    @Test
+    void loadReplacesIndex() {
+        FilmFacetIndex.Loader loader = new FilmFacetIndex.Loader();
+        loader.addFilm(1, 1, LocalDate.of(2000, 1, 1));
+        loader.addFilm(2, 2, LocalDate.of(2005, 6, 1));
+        loader.addFilm(3, null, LocalDate.of(2010, 12, 31));
+        loader.addFilm(4, 1, LocalDate.of(2010, 1, 1));
+        loader.addGenre(1, 1);
+        loader.addGenre(1, 2);
+        loader.addGenre(2, 2);
+        loader.addGenre(4, 1);
+        loader.addGenre(5, 1);
+
+        FilmFilter filter = filter(Set.of(1), Set.of(), 2005, null);
+        FilmFacetIndex.Result expected = facetIndex.filter(filter);
+        facetIndex = new FilmFacetIndex();
+        facetIndex.load(loader);
+
+        FilmFacetIndex.Result result = facetIndex.filter(filter);
+        assertEquals(expected.getFilms(), result.getFilms());
+        assertEquals(expected.getFacets(), result.getFacets());
+
+        facetIndex.remove(4);
+        assertEquals(IdBitmap.EMPTY, facetIndex.filter(filter).getFilms());
+    }
+
+    @Test
+    void selectByIdOrPopularity() {
+        IdBitmap films = IdBitmap.of(1, 2, 3, 4);
+
+        assertArrayEquals(new long[]{1, 2}, FilmFacetIndex.select(films, 2, null));
+        assertArrayEquals(new long[]{1, 2, 3, 4}, FilmFacetIndex.select(films, 10, null));
+        assertArrayEquals(new long[]{3, 4}, FilmFacetIndex.select(films, 2, id -> id == 3 ? 10 : id == 4 ? 5 : 0));
+        assertArrayEquals(new long[]{3, 4, 1}, FilmFacetIndex.select(films, 3, id -> id == 3 ? 10 : id == 4 ? 5 : 0));
+    }
+
+    private static FilmFilter filter(Set<Integer> genres, Set<Integer> mpa, Integer yearFrom, Integer yearTo) {
+        FilmFilter filter = new FilmFilter();
+        filter.setGenres(genres);
+        filter.setMpa(mpa);
+        filter.setYearFrom(yearFrom);
+        filter.setYearTo(yearTo);
+        return filter;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.film.LikesDAO;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FilmLeaderboardTest {
+    private LikesDAO likesDAO;
+    private FilmLeaderboard leaderboard;
+
+    @BeforeEach
+    void beforeEach() {
+        likesDAO = mock(LikesDAO.class);
+        when(likesDAO.getAllLikesCount()).thenReturn(Map.of(1L, 2, 2L, 5, 3L, 2));
+        leaderboard = new FilmLeaderboard(likesDAO);
+        leaderboard.load();
+    }
+
+    @Test
+    void loadFromLikes() {
+        assertEquals(List.of(2L, 1L, 3L), leaderboard.getTopFilms(10));
+        assertEquals(List.of(2L, 1L), leaderboard.getTopFilms(2));
+        assertEquals(5, leaderboard.getLikes(2));
+        assertEquals(0, leaderboard.getLikes(4));
+    }
+
+    @Test
+    void addAndRemoveLikes() {
+        leaderboard.addLike(3);
+        leaderboard.addLike(4);
+        assertEquals(List.of(2L, 3L, 1L, 4L), leaderboard.getTopFilms(10));
+
+        leaderboard.removeLike(4);
+        leaderboard.removeLike(4);
+        leaderboard.removeFilm(2);
+        assertEquals(List.of(3L, 1L), leaderboard.getTopFilms(10));
+        assertEquals(0, leaderboard.getLikes(4));
+    }
+
+    @Test
+    void reconcileWithLikes() {
+        leaderboard.addLike(4);
+
+        assertEquals(3, leaderboard.reconcile(Map.of(1L, 2, 2L, 1, 3L, 4)));
+        assertEquals(List.of(3L, 1L, 2L), leaderboard.getTopFilms(10));
+        assertEquals(0, leaderboard.getLikes(4));
+        assertEquals(0, leaderboard.reconcile(Map.of(1L, 2, 2L, 1, 3L, 4)));
+    }
+
+    @Test
+    void concurrentLikes() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    long filmId = 10 + j % 5;
+                    leaderboard.addLike(filmId);
+                    leaderboard.getTopFilms(3);
+                    if (j % 2 == 0) {
+                        leaderboard.removeLike(filmId);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        for (long filmId = 10; filmId < 15; filmId++) {
+            assertEquals(8 * 1000, leaderboard.getLikes(filmId));
+        }
+        assertEquals(List.of(10L, 11L, 12L, 13L, 14L, 2L, 1L, 3L), leaderboard.getTopFilms(10));
+    }
+}
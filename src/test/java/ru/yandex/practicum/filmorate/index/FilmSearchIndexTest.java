@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FilmSearchIndexTest {
+    private FilmSearchIndex searchIndex;
+
+    @BeforeEach
+    void beforeEach() {
+        searchIndex = new FilmSearchIndex();
+        searchIndex.put(1, "Матрица", "Хакер узнает, что мир - компьютерная симуляция");
+        searchIndex.put(2, "Матрица: Перезагрузка", "Продолжение истории Нео");
+        searchIndex.put(3, "The Matrix Resurrections", "Neo returns to the Matrix");
+        searchIndex.put(4, "Ёлки", "Новогодняя комедия о чудесах");
+        searchIndex.put(5, "Интерстеллар", "Путешествие через червоточину в поисках нового дома, в котором есть мир");
+    }
+
+    @Test
+    void tokenizeRussianAndEnglish() {
+        assertEquals(List.of("матрица", "перезагрузка", "neo", "2003"),
+                FilmSearchIndex.tokenize("Матрица: Перезагрузка (Neo, 2003)"));
+        assertEquals(List.of("елки"), FilmSearchIndex.tokenize("ЁЛКИ!"));
+        assertEquals(List.of(), FilmSearchIndex.tokenize(" - "));
+    }
+
+    @Test
+    void exactMatchesRankedByBm25() {
+        // Короткое название с одним словом выше названия из двух слов
+        assertArrayEquals(new long[]{1, 2}, searchIndex.search("матрица", 10));
+        assertArrayEquals(new long[]{3}, searchIndex.search("MATRIX", 10));
+        assertArrayEquals(new long[]{4}, searchIndex.search("елки", 10));
+        assertArrayEquals(new long[]{1}, searchIndex.search("матрица", 1));
+        assertArrayEquals(new long[0], searchIndex.search("вестерн", 10));
+        assertArrayEquals(new long[0], searchIndex.search("!!!", 10));
+    }
+
+    @Test
+    void nameWeighsMoreThanDescription() {
+        // "мир" в описании короткого фильма 1 и длинного фильма 5, у фильма 6 - в названии
+        assertArrayEquals(new long[]{1, 5}, searchIndex.search("мир", 10));
+        searchIndex.put(6, "Мир Юрского периода", "Парк с динозаврами выходит из-под контроля");
+        assertArrayEquals(new long[]{6, 1, 5}, searchIndex.search("мир", 10));
+    }
+
+    @Test
+    void prefixAndTypoMatches() {
+        assertArrayEquals(new long[]{5}, searchIndex.search("интер", 10));
+        assertArrayEquals(new long[]{3}, searchIndex.search("resur", 10));
+        assertArrayEquals(new long[]{5}, searchIndex.search("интерстелар", 10));
+        assertArrayEquals(new long[]{1, 2}, searchIndex.search("матрцыа матрица", 10));
+    }
+
+    @Test
+    void updateAndRemoveFilms() {
+        searchIndex.put(4, "Ирония судьбы", "Новогодняя комедия");
+        assertArrayEquals(new long[0], searchIndex.search("елки", 10));
+        assertArrayEquals(new long[]{4}, searchIndex.search("ирония", 10));
+
+        searchIndex.remove(1);
+        searchIndex.remove(42);
+        assertArrayEquals(new long[]{2}, searchIndex.search("матрица", 10));
+        assertEquals(4, searchIndex.size());
+    }
+}
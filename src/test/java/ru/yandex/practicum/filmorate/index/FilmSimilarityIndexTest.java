@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.film.FilmLike;
+import ru.yandex.practicum.filmorate.dao.film.LikesDAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class FilmSimilarityIndexTest {
+    private final List<FilmLike> likes = new ArrayList<>();
+    private LikeIndex likeIndex;
+    private FilmSimilarityIndex similarityIndex;
+
+    // Лайкнувшие: 1 - 10, 11, 12; 2 - 10, 11; 3 - 12, 13; 4 - 13; 5 - 14.
+    // Сходство: 1 и 2 - 0.82, 3 и 4 - 0.71, 1 и 3 - 0.41
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void beforeEach() {
+        long[][] pairs = {{1, 10}, {1, 11}, {1, 12}, {2, 10}, {2, 11}, {3, 12}, {3, 13}, {4, 13}, {5, 14}};
+        for (long[] pair : pairs) {
+            likes.add(new FilmLike(pair[0], pair[1]));
+        }
+
+        LikesDAO likesDAO = mock(LikesDAO.class);
+        doAnswer(invocation -> {
+            Consumer<FilmLike> action = invocation.getArgument(0);
+            likes.forEach(action);
+            return null;
+        }).when(likesDAO).forEachLike(any(Consumer.class));
+        likeIndex = new LikeIndex(likesDAO);
+        likeIndex.load();
+    }
+
+    @AfterEach
+    void afterEach() {
+        similarityIndex.close();
+    }
+
+    @Test
+    void similarFilmsBySharedLikes() {
+        similarityIndex = create(50);
+
+        assertArrayEquals(new long[]{2, 3}, similarityIndex.getSimilarFilms(1));
+        assertArrayEquals(new long[]{4, 1}, similarityIndex.getSimilarFilms(3));
+        assertArrayEquals(new long[0], similarityIndex.getSimilarFilms(5));
+        assertArrayEquals(new long[0], similarityIndex.getSimilarFilms(6));
+    }
+
+    @Test
+    void neighborsArePrunedToTopK() {
+        similarityIndex = create(1);
+
+        assertArrayEquals(new long[]{2}, similarityIndex.getSimilarFilms(1));
+        assertArrayEquals(new long[]{4}, similarityIndex.getSimilarFilms(3));
+    }
+
+    @Test
+    void recommendUnlikedFilmsBySummedSimilarity() {
+        similarityIndex = create(50);
+
+        assertArrayEquals(new long[]{3}, similarityIndex.recommend(10, 10));
+        assertArrayEquals(new long[]{2, 4}, similarityIndex.recommend(12, 10));
+        assertArrayEquals(new long[]{2}, similarityIndex.recommend(12, 1));
+        assertArrayEquals(new long[]{1}, similarityIndex.recommend(13, 10));
+        assertArrayEquals(new long[0], similarityIndex.recommend(99, 10));
+    }
+
+    @Test
+    void changedFilmsAreRecomputedOnRefresh() {
+        similarityIndex = create(50);
+        likeIndex.addLike(5, 10);
+        similarityIndex.markChanged(5);
+        assertArrayEquals(new long[0], similarityIndex.recommend(14, 10));
+
+        similarityIndex.refresh();
+        assertArrayEquals(new long[]{2, 1}, similarityIndex.recommend(14, 10));
+    }
+
+    // Фильм f лайкнули пользователи f и f + 1, поэтому похожи только соседние фильмы.
+    // Фильмов больше, чем в одной подзадаче, строки считаются в нескольких задачах
+    @Test
+    void rebuildSplitsFilmsAcrossTasks() {
+        likes.clear();
+        for (long filmId = 1; filmId <= 300; filmId++) {
+            likes.add(new FilmLike(filmId, filmId));
+            likes.add(new FilmLike(filmId, filmId + 1));
+        }
+        likeIndex.load();
+        similarityIndex = create(50);
+
+        assertArrayEquals(new long[]{2}, similarityIndex.getSimilarFilms(1));
+        assertArrayEquals(new long[]{149, 151}, similarityIndex.getSimilarFilms(150));
+        assertArrayEquals(new long[]{299}, similarityIndex.getSimilarFilms(300));
+    }
+
+    private FilmSimilarityIndex create(int topK) {
+        FilmSimilarityIndex index = new FilmSimilarityIndex(likeIndex, topK, 1000, 500, 4);
+        index.load();
+        return index;
+    }
+}
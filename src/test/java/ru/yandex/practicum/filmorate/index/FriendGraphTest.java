@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.user.Friendship;
+import ru.yandex.practicum.filmorate.dao.user.FriendshipDAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class FriendGraphTest {
+    private final List<Friendship> friendships = new ArrayList<>();
+    private Runnable duringLoad = () -> {
+    };
+    private FriendGraph friendGraph;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void beforeEach() {
+        friendships.addAll(List.of(new Friendship(1, 2, true), new Friendship(1, 3, false),
+                new Friendship(1, 4, false), new Friendship(2, 1, true), new Friendship(2, 3, false),
+                new Friendship(5, 3, false)));
+
+        FriendshipDAO friendshipDAO = mock(FriendshipDAO.class);
+        doAnswer(invocation -> {
+            Consumer<Friendship> action = invocation.getArgument(0);
+            List<Friendship> snapshot = List.copyOf(friendships);
+            duringLoad.run();
+            snapshot.forEach(action);
+            return null;
+        }).when(friendshipDAO).forEachFriendship(any(Consumer.class));
+        friendGraph = new FriendGraph(friendshipDAO);
+        friendGraph.load();
+    }
+
+    @Test
+    void loadFromFriendships() {
+        assertArrayEquals(new long[]{2, 3, 4}, friendGraph.getFriends(1));
+        assertArrayEquals(new long[]{3}, friendGraph.getFriends(5));
+        assertArrayEquals(new long[0], friendGraph.getFriends(3));
+        assertEquals(2, friendGraph.degree(2));
+        assertEquals(0, friendGraph.degree(7));
+        assertTrue(friendGraph.isFriend(1, 4));
+        assertFalse(friendGraph.isFriend(4, 1));
+        assertArrayEquals(new long[]{3}, friendGraph.getMutualFriends(1, 2));
+        assertArrayEquals(new long[]{3}, friendGraph.getMutualFriends(5, 1));
+        assertArrayEquals(new long[0], friendGraph.getMutualFriends(1, 7));
+    }
+
+    @Test
+    void sampleFriendsEvenlyAcrossRow() {
+        assertArrayEquals(new long[]{2, 3, 4}, friendGraph.sampleFriends(1, 5));
+        assertArrayEquals(new long[]{2, 3}, friendGraph.sampleFriends(1, 2));
+        assertArrayEquals(new long[0], friendGraph.sampleFriends(3, 2));
+    }
+
+    @Test
+    void changesAreVisibleOverLoadedGraph() {
+        friendGraph.addFriend(2, 4);
+        friendGraph.addFriend(3, 1);
+        friendGraph.removeFriend(1, 3);
+        friendGraph.removeFriend(5, 3);
+
+        assertArrayEquals(new long[]{2, 4}, friendGraph.getFriends(1));
+        assertArrayEquals(new long[]{1, 3, 4}, friendGraph.getFriends(2));
+        assertArrayEquals(new long[]{1}, friendGraph.getFriends(3));
+        assertEquals(0, friendGraph.degree(5));
+        assertArrayEquals(new long[]{4}, friendGraph.getMutualFriends(1, 2));
+        assertTrue(friendGraph.isFriend(3, 1));
+        assertFalse(friendGraph.isFriend(1, 3));
+    }
+
+    @Test
+    void rebuildKeepsChangesMadeDuringLoad() {
+        duringLoad = () -> friendGraph.addFriend(4, 1);
+        friendGraph.rebuild();
+        assertArrayEquals(new long[]{1}, friendGraph.getFriends(4));
+    }
+
+    @Test
+    void rebuildReplacesChangesMadeBeforeLoad() {
+        // Изменение до начала загрузки уже есть в user_friends, граф берет строку из загрузки
+        friendGraph.removeFriend(1, 2);
+        friendships.remove(new Friendship(1, 2, true));
+        friendships.add(2, new Friendship(1, 6, false));
+        friendGraph.rebuild();
+
+        assertArrayEquals(new long[]{3, 4, 6}, friendGraph.getFriends(1));
+    }
+}
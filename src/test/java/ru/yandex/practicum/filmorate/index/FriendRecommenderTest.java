@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.user.Friendship;
+import ru.yandex.practicum.filmorate.dao.user.FriendshipDAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class FriendRecommenderTest {
+    private FriendGraph friendGraph;
+
+    // Друзья 1: 2, 3, 4. У них общие с 1 знакомые: 5 - через 2, 3 и 4, 6 - через 2 и 3, 7 - через 4
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void beforeEach() {
+        List<Friendship> friendships = new ArrayList<>();
+        long[][] edges = {{1, 2}, {1, 3}, {1, 4}, {2, 1}, {2, 5}, {2, 6}, {3, 5}, {3, 6}, {4, 5}, {4, 7}};
+        for (long[] edge : edges) {
+            friendships.add(new Friendship(edge[0], edge[1], false));
+        }
+
+        FriendshipDAO friendshipDAO = mock(FriendshipDAO.class);
+        doAnswer(invocation -> {
+            Consumer<Friendship> action = invocation.getArgument(0);
+            friendships.forEach(action);
+            return null;
+        }).when(friendshipDAO).forEachFriendship(any(Consumer.class));
+        friendGraph = new FriendGraph(friendshipDAO);
+        friendGraph.load();
+    }
+
+    @Test
+    void rankByMutualFriendsExcludingFriends() {
+        FriendRecommender recommender = new FriendRecommender(friendGraph, 100, 100, 100, 10, 10);
+
+        assertArrayEquals(new long[]{5, 6, 7}, recommender.recommend(1, 10));
+        assertArrayEquals(new long[]{5, 6}, recommender.recommend(1, 2));
+        assertArrayEquals(new long[]{3, 4}, recommender.recommend(2, 10));
+        assertArrayEquals(new long[0], recommender.recommend(8, 10));
+    }
+
+    @Test
+    void workIsBoundedBySampling() {
+        // Из друзей 1 просматриваются только 2 и 3, у каждого из них только первый друг: 1 у 2 и 5 у 3
+        FriendRecommender recommender = new FriendRecommender(friendGraph, 2, 1, 100, 10, 10);
+
+        assertArrayEquals(new long[]{5}, recommender.recommend(1, 10));
+    }
+
+    @Test
+    void heavyUsersAreCachedAndRefreshed() {
+        FriendRecommender recommender = new FriendRecommender(friendGraph, 100, 100, 3, 10, 10);
+        assertArrayEquals(new long[]{5, 6, 7}, recommender.recommend(1, 10));
+
+        // Новый друг сразу исключается из закэшированного результата, его друзья появятся после пересчета
+        friendGraph.addFriend(1, 5);
+        friendGraph.addFriend(5, 8);
+        assertArrayEquals(new long[]{6, 7}, recommender.recommend(1, 10));
+
+        recommender.refresh();
+        assertArrayEquals(new long[]{6, 7, 8}, recommender.recommend(1, 10));
+        assertArrayEquals(new long[]{6, 7}, recommender.recommend(1, 2));
+    }
+}
@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdBitmapTest {
+
+    @Test
+    void addAndRemove() {
+        IdBitmap bitmap = IdBitmap.EMPTY.with(5).with(70_000).with(1).with(5);
+        assertEquals(3, bitmap.cardinality());
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(2));
+        assertFalse(bitmap.contains(-1));
+        assertArrayEquals(new int[]{1, 5, 70_000}, bitmap.toArray());
+        assertEquals(List.of(1L, 5L, 70_000L), bitmap.toIdList());
+
+        IdBitmap removed = bitmap.without(70_000).without(3);
+        assertArrayEquals(new int[]{1, 5}, removed.toArray());
+        assertArrayEquals(new int[]{1, 5, 70_000}, bitmap.toArray());
+        assertSame(IdBitmap.EMPTY, removed.without(1).without(5));
+        assertSame(bitmap, bitmap.with(1));
+    }
+
+    @Test
+    void negativeIdsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> IdBitmap.EMPTY.with(-1));
+        assertThrows(IllegalArgumentException.class, () -> new IdBitmap.Builder().add(-1));
+    }
+
+    // Плотный контейнер переходит в битовую карту и обратно, значения при этом не меняются
+    @Test
+    void denseContainerSwitchesToBitmap() {
+        IdBitmap bitmap = IdBitmap.EMPTY;
+        for (int i = 0; i < 5000; i++) {
+            bitmap = bitmap.with(i * 2);
+        }
+        assertEquals(5000, bitmap.cardinality());
+        assertTrue(bitmap.sizeInBytes() < 9000);
+        assertTrue(bitmap.contains(9998));
+        assertFalse(bitmap.contains(9999));
+
+        for (int i = 0; i < 1000; i++) {
+            bitmap = bitmap.without(i * 2);
+        }
+        assertEquals(4000, bitmap.cardinality());
+        assertTrue(bitmap.sizeInBytes() < 9000);
+        assertEquals(2000, bitmap.toArray()[0]);
+    }
+
+    @Test
+    void firstValues() {
+        IdBitmap bitmap = IdBitmap.EMPTY.with(3).with(1).with(70_000);
+        for (int i = 0; i < 5000; i++) {
+            bitmap = bitmap.with(140_000 + i * 2);
+        }
+
+        assertArrayEquals(new int[]{1, 3}, bitmap.first(2));
+        assertArrayEquals(new int[]{1, 3, 70_000, 140_000}, bitmap.first(4));
+        assertEquals(5003, bitmap.first(10_000).length);
+        assertArrayEquals(new int[0], IdBitmap.EMPTY.first(5));
+    }
+
+    @Test
+    void sparseValuesTakeTwoBytesEach() {
+        IdBitmap.Builder builder = new IdBitmap.Builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add(i * 7);
+        }
+        IdBitmap bitmap = builder.build();
+        assertEquals(1000, bitmap.cardinality());
+        assertTrue(bitmap.sizeInBytes() < 2200);
+    }
+
+    // Операции сравниваются с TreeSet на случайных множествах с разреженными и плотными контейнерами
+    @Test
+    void setOperationsMatchTreeSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            TreeSet<Integer> left = randomSet(random);
+            TreeSet<Integer> right = randomSet(random);
+            IdBitmap leftBitmap = build(left);
+            IdBitmap rightBitmap = build(right);
+            assertArrayEquals(toArray(left), leftBitmap.toArray());
+
+            TreeSet<Integer> and = new TreeSet<>(left);
+            and.retainAll(right);
+            assertArrayEquals(toArray(and), leftBitmap.and(rightBitmap).toArray());
+            assertEquals(and.size(), leftBitmap.and(rightBitmap).cardinality());
+            assertEquals(and.size(), leftBitmap.andCardinality(rightBitmap));
+
+            TreeSet<Integer> or = new TreeSet<>(left);
+            or.addAll(right);
+            assertArrayEquals(toArray(or), leftBitmap.or(rightBitmap).toArray());
+            assertEquals(or.size(), leftBitmap.or(rightBitmap).cardinality());
+
+            TreeSet<Integer> andNot = new TreeSet<>(left);
+            andNot.removeAll(right);
+            assertArrayEquals(toArray(andNot), leftBitmap.andNot(rightBitmap).toArray());
+            assertEquals(andNot.size(), leftBitmap.andNot(rightBitmap).cardinality());
+        }
+    }
+
+    @Test
+    void incrementalChangesMatchTreeSet() {
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+        IdBitmap bitmap = IdBitmap.EMPTY;
+        for (int i = 0; i < 50_000; i++) {
+            int value = random.nextInt(3 * 65_536);
+            if (random.nextInt(3) == 0) {
+                expected.remove(value);
+                bitmap = bitmap.without(value);
+            } else {
+                expected.add(value);
+                bitmap = bitmap.with(value);
+            }
+        }
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        assertEquals(build(expected), bitmap);
+    }
+
+    private static TreeSet<Integer> randomSet(Random random) {
+        TreeSet<Integer> set = new TreeSet<>();
+        int containers = random.nextInt(4);
+        for (int container = 0; container < containers; container++) {
+            int high = random.nextInt(4) << 16;
+            int size = random.nextBoolean() ? random.nextInt(100) : 3000 + random.nextInt(20_000);
+            for (int i = 0; i < size; i++) {
+                set.add(high | random.nextInt(65_536));
+            }
+        }
+        return set;
+    }
+
+    private static IdBitmap build(TreeSet<Integer> values) {
+        IdBitmap.Builder builder = new IdBitmap.Builder();
+        values.descendingSet().forEach(builder::add);
+        return builder.build();
+    }
+
+    private static int[] toArray(TreeSet<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.film.FilmLike;
+import ru.yandex.practicum.filmorate.dao.film.LikesDAO;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class LikeIndexTest {
+    private LikeIndex likeIndex;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void beforeEach() {
+        LikesDAO likesDAO = mock(LikesDAO.class);
+        doAnswer(invocation -> {
+            Consumer<FilmLike> action = invocation.getArgument(0);
+            List.of(new FilmLike(1, 10), new FilmLike(1, 11), new FilmLike(2, 10)).forEach(action);
+            return null;
+        }).when(likesDAO).forEachLike(any(Consumer.class));
+        likeIndex = new LikeIndex(likesDAO);
+        likeIndex.load();
+    }
+
+    @Test
+    void loadFromLikes() {
+        assertEquals(List.of(10L, 11L), likeIndex.getFilmLikes(1).toIdList());
+        assertEquals(List.of(1L, 2L), likeIndex.getUserLikes(10).toIdList());
+        assertEquals(2, likeIndex.getFilmLikes(1).cardinality());
+        assertTrue(likeIndex.getFilmLikes(2).contains(10));
+        assertFalse(likeIndex.getFilmLikes(2).contains(11));
+        assertTrue(likeIndex.getFilmLikes(3).isEmpty());
+    }
+
+    @Test
+    void addAndRemoveLikes() {
+        likeIndex.addLike(3, 11);
+        likeIndex.removeLike(1, 10);
+        likeIndex.removeLike(5, 10);
+
+        assertEquals(List.of(11L), likeIndex.getFilmLikes(1).toIdList());
+        assertEquals(List.of(1L, 3L), likeIndex.getUserLikes(11).toIdList());
+        assertEquals(List.of(2L), likeIndex.getUserLikes(10).toIdList());
+        assertEquals(0, likeIndex.getUserLikes(10).andCardinality(likeIndex.getUserLikes(11)));
+    }
+
+    @Test
+    void removeFilmRemovesItFromUsers() {
+        likeIndex.removeFilm(1);
+
+        assertTrue(likeIndex.getFilmLikes(1).isEmpty());
+        assertEquals(List.of(2L), likeIndex.getUserLikes(10).toIdList());
+        assertTrue(likeIndex.getUserLikes(11).isEmpty());
+    }
+
+    @Test
+    void idsOutOfIntRangeAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> likeIndex.addLike(1, Integer.MAX_VALUE + 1L));
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TopKTest {
+
+    @Test
+    void bestByScoreThenById() {
+        TopK top = new TopK(3);
+        top.offer(5, 1.0);
+        top.offer(4, 3.0);
+        top.offer(3, 2.0);
+        top.offer(2, 2.0);
+        top.offer(1, 0.5);
+        assertArrayEquals(new long[]{4, 2, 3}, top.toArray());
+    }
+
+    @Test
+    void fewerCandidatesThanLimit() {
+        TopK top = new TopK(10);
+        top.offer(7, 1.0);
+        top.offer(8, 1.0);
+        assertArrayEquals(new long[]{7, 8}, top.toArray());
+        assertArrayEquals(new long[0], top.toArray());
+    }
+
+    @Test
+    void zeroLimit() {
+        TopK top = new TopK(0);
+        top.offer(1, 1.0);
+        assertArrayEquals(new long[0], top.toArray());
+    }
+}
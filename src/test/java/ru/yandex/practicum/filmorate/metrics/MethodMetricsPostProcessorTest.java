@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.film.GenreDAO;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.util.StorageException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class MethodMetricsPostProcessorTest {
+    private final MeterRegistry registry;
+    private final GenreDAO genreDAO;
+    private final FilmDbStorage filmDbStorage;
+    private final FilmService filmService;
+    private final ApplicationContext context;
+
+    @Test
+    void daoCallsAreTimed() {
+        genreDAO.getAllGenres();
+        genreDAO.getAllGenres();
+        filmDbStorage.getFilms();
+
+        Timer genres = registry.find(MethodMetricsPostProcessor.DAO_TIMER)
+                .tags("class", "GenreDAO", "method", "getAllGenres", "exception", "none")
+                .timer();
+        assertNotNull(genres);
+        assertEquals(2, genres.count());
+        assertNotNull(registry.find(MethodMetricsPostProcessor.DAO_TIMER)
+                .tags("class", "FilmDbStorage", "method", "getFilms")
+                .timer());
+    }
+
+    @Test
+    void serviceExceptionsAreTagged() {
+        assertThrows(StorageException.class, () -> filmService.getFilm(9999));
+
+        assertNotNull(registry.find(MethodMetricsPostProcessor.SERVICE_TIMER)
+                .tags("method", "getFilm", "exception", "StorageException")
+                .timer());
+    }
+
+    // DbFilmService наследует getFilms от DefaultFilmService, замеры двух бинов не смешиваются
+    @Test
+    void inheritedMethodsAreTaggedByBean() {
+        context.getBean("dbFilmService", FilmService.class).getFilms();
+        context.getBean("defaultFilmService", FilmService.class).getFilms();
+        context.getBean("defaultFilmService", FilmService.class).getFilms();
+
+        assertEquals(1, registry.find(MethodMetricsPostProcessor.SERVICE_TIMER)
+                .tags("class", "DbFilmService", "method", "getFilms")
+                .timer().count());
+        assertEquals(2, registry.find(MethodMetricsPostProcessor.SERVICE_TIMER)
+                .tags("class", "DefaultFilmService", "method", "getFilms")
+                .timer().count());
+    }
+}
@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.dao.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.RatingMpa;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.sql.budget.strict=true")
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class QueryBudgetFilterTest {
+    private final MockMvc mockMvc;
+    private final MeterRegistry registry;
+    private final QueryBudgetProperties budget;
+    private final FilmDbStorage filmDbStorage;
+
+    @BeforeEach
+    void createFilm() {
+        Film film = new Film("film", "desc", LocalDate.of(2000, 12, 12), 100);
+        film.setMpa(new RatingMpa(1, "G"));
+        film.setGenres(Set.of(new Genre(1, "Комедия"), new Genre(2, "Драма")));
+        filmDbStorage.saveFilm(film);
+    }
+
+    @Test
+    void getFilmFitsBudget() throws Exception {
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+
+        DistributionSummary statements = registry.find(QueryBudgetFilter.STATEMENTS_METRIC)
+                .tags("method", "GET", "uri", "/films/{id}")
+                .summary();
+        assertNotNull(statements);
+        assertEquals(1, statements.count());
+        assertEquals(2, statements.max());
+    }
+
+    // С параметрами фильтра /films отвечает каталогом, без них - списком фильмов
+    @Test
+    void getFilmsCatalogFitsBudget() throws Exception {
+        mockMvc.perform(get("/films").param("genre", "1,3").param("yearFrom", "2000").param("sort", "popular"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.facets.genres.2").value(1));
+        mockMvc.perform(get("/films")).andExpect(status().isOk()).andExpect(jsonPath("$[0].id").value(1));
+        mockMvc.perform(get("/films").param("sort", "rating")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/films").param("limit", "10").param("genre", "1")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1));
+
+        DistributionSummary statements = registry.find(QueryBudgetFilter.STATEMENTS_METRIC)
+                .tags("method", "GET", "uri", "/films")
+                .summary();
+        assertNotNull(statements);
+        assertEquals(2, statements.max());
+    }
+
+    @Test
+    void exceededBudgetFailsRequestInStrictMode() {
+        budget.getEndpoints().put("GET /films/{id}", 1);
+
+        assertThrows(IllegalStateException.class, () -> mockMvc.perform(get("/films/1")));
+    }
+
+    // Асинхронная выгрузка в строгом режиме отправляет буферизованный ответ после завершения записи
+    @Test
+    void exportIsSentInStrictMode() throws Exception {
+        MvcResult result = mockMvc.perform(get("/films/export")).andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"name\":\"film\"")));
+    }
+
+    // Ответ, превысивший бюджет, не успевает уйти клиенту: тело остается в буфере фильтра
+    @Test
+    void exceededBudgetFailsBeforeResponseIsCommitted() throws Exception {
+        QueryBudgetProperties strict = new QueryBudgetProperties();
+        strict.setStrict(true);
+        strict.setLimit(1);
+        QueryBudgetFilter filter = new QueryBudgetFilter(new SimpleMeterRegistry(), strict);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(new MockHttpServletRequest("GET", "/films"),
+                response, (req, res) -> {
+                    QueryCounter.increment();
+                    QueryCounter.increment();
+                    res.getWriter().write("[]");
+                    res.flushBuffer();
+                }));
+        assertFalse(response.isCommitted());
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    void failedRequestIsCounted() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        QueryBudgetFilter filter = new QueryBudgetFilter(meters, new QueryBudgetProperties());
+
+        assertThrows(IllegalArgumentException.class, () -> filter.doFilter(new MockHttpServletRequest("GET", "/films"),
+                new MockHttpServletResponse(), (req, res) -> {
+                    QueryCounter.increment();
+                    throw new IllegalArgumentException();
+                }));
+
+        DistributionSummary statements = meters.find(QueryBudgetFilter.STATEMENTS_METRIC).summary();
+        assertNotNull(statements);
+        assertEquals(1, statements.count());
+        assertEquals(1, statements.max());
+    }
+}
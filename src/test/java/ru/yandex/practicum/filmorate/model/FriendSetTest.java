@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FriendSetTest {
+
+    @Test
+    void addAndRemoveKeepStatuses() {
+        FriendSet friends = FriendSet.EMPTY.with(5, true).with(1, false).with(3, true).with(5, false);
+        assertEquals(3, friends.size());
+        assertArrayEquals(new long[]{1, 3, 5}, friends.toArray());
+        assertTrue(friends.isConfirmed(5));
+        assertFalse(friends.isConfirmed(1));
+        assertFalse(friends.isConfirmed(2));
+
+        FriendSet removed = friends.without(3).without(4);
+        assertEquals(Map.of(1L, false, 5L, true), removed.toMap());
+        assertEquals(List.of(1L, 3L, 5L), friends.toIdList());
+        assertSame(FriendSet.EMPTY, removed.without(1).without(5));
+        assertSame(friends, friends.with(1, true));
+    }
+
+    @Test
+    void statusesMatchMapOnRandomChanges() {
+        Random random = new Random(7);
+        Map<Long, Boolean> expected = new TreeMap<>();
+        FriendSet friends = FriendSet.EMPTY;
+
+        for (int i = 0; i < 5_000; i++) {
+            long id = random.nextInt(300);
+            if (random.nextBoolean()) {
+                boolean status = random.nextBoolean();
+                expected.putIfAbsent(id, status);
+                friends = friends.with(id, status);
+            } else {
+                expected.remove(id);
+                friends = friends.without(id);
+            }
+        }
+
+        assertEquals(expected, friends.toMap());
+        assertEquals(expected.size(), friends.size());
+    }
+
+    @Test
+    void bulkAddKeepsExistingStatuses() {
+        FriendSet friends = FriendSet.of(Map.of(3L, true, 1L, false));
+        assertEquals(Map.of(1L, false, 3L, true), friends.toMap());
+        assertSame(FriendSet.EMPTY, FriendSet.of(Map.of()));
+
+        FriendSet merged = friends.withAll(Map.of(1L, true, 2L, true));
+        assertEquals(Map.of(1L, false, 2L, true, 3L, true), merged.toMap());
+        assertSame(friends, friends.withAll(Map.of(3L, false)));
+    }
+
+    @Test
+    void intersectMergesSortedIds() {
+        FriendSet first = FriendSet.EMPTY.with(1, false).with(4, true).with(7, false).with(10, false);
+        FriendSet second = FriendSet.EMPTY.with(10, true).with(2, false).with(4, false);
+
+        assertArrayEquals(new long[]{4, 10}, first.intersect(second));
+        assertArrayEquals(new long[]{4, 10}, second.intersect(first));
+        assertEquals(0, first.intersect(FriendSet.EMPTY).length);
+        assertArrayEquals(new long[]{4}, FriendSet.intersect(new long[]{9, 1, 4, 7, 0}, 1, 4,
+                new long[]{2, 4, 10}, 0, 2));
+    }
+
+    @Test
+    void userSerializesFriendsAsMap() throws Exception {
+        User user = new User("a@mail.ru", "login", "name", LocalDate.of(1990, 10, 10));
+        user.addFriend(2, true);
+        user.addFriend(1, false);
+
+        String json = new ObjectMapper().registerModule(new JavaTimeModule()).writeValueAsString(user);
+        assertTrue(json.contains("\"friends\":{\"1\":false,\"2\":true}"), json);
+        assertFalse(json.contains("friendSet"), json);
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmLikesDAO;
+import ru.yandex.practicum.filmorate.dao.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.index.LikeIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.RatingMpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.StorageException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class DbFilmServiceTest {
+    private static final int THREADS = 4;
+    private static final int OPERATIONS = 200;
+
+    private final DbFilmService filmService;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final DbFilmLikesDAO dbFilmLikesDAO;
+    private final LikeIndex likeIndex;
+    private final FilmLeaderboard leaderboard;
+
+    // Лайки и удаления одной пары из разных потоков: индексы в итоге совпадают с film_likes
+    @Test
+    void concurrentLikeAndUnlikeKeepIndexesInSync() throws Exception {
+        Film film = new Film("film", "desc", LocalDate.of(2020, 12, 12), 100);
+        film.setMpa(new RatingMpa(1, "G"));
+        filmDbStorage.saveFilm(film);
+        userDbStorage.createUser(new User("a@mail.ru", "login", "name", LocalDate.of(1990, 10, 10)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                boolean like = i % 2 == 0;
+                tasks.add(executor.submit(() -> {
+                    for (int j = 0; j < OPERATIONS; j++) {
+                        try {
+                            if (like) {
+                                filmService.addLikeToFilm(1, 1);
+                            } else {
+                                filmService.removeLikeFromFilm(1, 1);
+                            }
+                        } catch (StorageException e) {
+                            // Лайк уже есть или уже удален
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Long> likes = dbFilmLikesDAO.getFilmLikes(1);
+        assertEquals(likes, likeIndex.getFilmLikes(1).toIdList());
+        assertEquals(likes.size(), leaderboard.getLikes(1));
+    }
+}
@@ -4,6 +4,8 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
 import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
@@ -11,11 +13,13 @@ import ru.yandex.practicum.filmorate.util.StorageException;
 import ru.yandex.practicum.filmorate.util.ValidationException;
 
 import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -165,6 +169,7 @@ class DefaultFilmServiceTest {
 
         filmService.addLikeToFilm(film.getId(), user.getId());
         assertEquals(1, filmService.getFilms().get(0).getLikesNumber());
+        assertEquals(List.of(user.getId()), filmService.getFilmLikes(film.getId()));
         filmService.removeLikeFromFilm(film.getId(), user.getId());
         assertEquals(0, filmService.getFilms().get(0).getLikesNumber());
     }
@@ -239,4 +244,89 @@ class DefaultFilmServiceTest {
         assertEquals(5, filmService.getTopFilms(5).size());
         assertEquals(0, filmService.getTopFilms(0).size());
     }
-}
\ No newline at end of file
+
+    // film и film1 нравятся пользователю, film4 ближе к ним по лайкам, чем film2, film3 с ними не пересекается
+    @Test
+    void getRecommendedFilmsTest() {
+        Film film1 = new Film("1film", "desc", LocalDate.of(2020, 12, 12), 100);
+        Film film2 = new Film("2film", "desc", LocalDate.of(2020, 12, 12), 100);
+        Film film3 = new Film("3film", "desc", LocalDate.of(2020, 12, 12), 100);
+        Film film4 = new Film("4film", "desc", LocalDate.of(2020, 12, 12), 100);
+        List.of(film, film1, film2, film3, film4).forEach(filmService::createFilm);
+        assertTrue(filmService.getRecommendedFilms(user.getId(), 10).isEmpty());
+
+        film.addLike(user.getId());
+        film.addLike(101);
+        film.addLike(102);
+        film1.addLike(user.getId());
+        film1.addLike(101);
+        film2.addLike(102);
+        film2.addLike(103);
+        film3.addLike(103);
+        film4.addLike(101);
+        List.of(film, film1, film2, film3, film4).forEach(filmService::updateFilm);
+
+        assertEquals(List.of(film4, film2), filmService.getRecommendedFilms(user.getId(), 10));
+        assertEquals(List.of(film4), filmService.getRecommendedFilms(user.getId(), 1));
+        assertThrows(StorageException.class, () -> filmService.getRecommendedFilms(-1, 10));
+    }
+
+    // После снятия лайка фильм снова рекомендуется, удаленный фильм пропадает из рекомендаций
+    @Test
+    void getRecommendedFilmsAfterLikeChanges() {
+        Film film1 = new Film("1film", "desc", LocalDate.of(2020, 12, 12), 100);
+        Film film2 = new Film("2film", "desc", LocalDate.of(2020, 12, 12), 100);
+        Film film4 = new Film("4film", "desc", LocalDate.of(2020, 12, 12), 100);
+        List.of(film, film1, film2, film4).forEach(filmService::createFilm);
+        film.addLike(101);
+        film.addLike(102);
+        film1.addLike(101);
+        film2.addLike(102);
+        film2.addLike(103);
+        film4.addLike(101);
+        List.of(film, film1, film2, film4).forEach(filmService::updateFilm);
+        filmService.addLikeToFilm(film.getId(), user.getId());
+        filmService.addLikeToFilm(film1.getId(), user.getId());
+        assertEquals(List.of(film4, film2), filmService.getRecommendedFilms(user.getId(), 10));
+
+        filmService.removeLikeFromFilm(film1.getId(), user.getId());
+        assertEquals(List.of(film1, film4, film2), filmService.getRecommendedFilms(user.getId(), 10));
+
+        filmService.deleteFilm(film4.getId());
+        assertEquals(List.of(film1, film2), filmService.getRecommendedFilms(user.getId(), 10));
+    }
+
+    @Test
+    void getFilmsCatalogWithWrongYears() {
+        FilmFilter filter = new FilmFilter();
+        filter.setYearFrom(2010);
+        filter.setYearTo(2000);
+        assertThrows(ValidationException.class, () -> filmService.getFilmsCatalog(filter, 10));
+
+        filmService.createFilm(film);
+        filter.setYearTo(null);
+        assertEquals(0, filmService.getFilmsCatalog(filter, 10).getTotal());
+    }
+
+    @Test
+    void getFilmsByPages() {
+        for (int i = 0; i < 5; i++) {
+            filmService.createFilm(new Film("film" + i, "description", LocalDate.of(2000, 12, 12), 100));
+        }
+        List<Film> films = filmService.getFilms();
+        films.sort(Comparator.comparingLong(Film::getId));
+
+        Page<Film> first = filmService.getFilmsPage(null, 2);
+        assertEquals(films.subList(0, 2), first.getItems());
+        assertNotNull(first.getNext());
+
+        Page<Film> second = filmService.getFilmsPage(first.getNext(), 2);
+        assertEquals(films.subList(2, 4), second.getItems());
+
+        Page<Film> last = filmService.getFilmsPage(second.getNext(), 2);
+        assertEquals(films.subList(4, 5), last.getItems());
+        assertNull(last.getNext());
+
+        assertThrows(ValidationException.class, () -> filmService.getFilmsPage("wrong", 2));
+    }
+}
@@ -8,7 +8,14 @@ import ru.yandex.practicum.filmorate.util.StorageException;
 import ru.yandex.practicum.filmorate.util.ValidationException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -257,4 +264,79 @@ class DefaultUserServiceTest {
         assertEquals(userFriends, userService.getUserFriends(user.getId()));
         assertEquals(friendFriends, userService.getUserFriends(mainFriend.getId()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getRecommendationsTest() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(userService.createUser(new User(i + "@mail.ru", "login" + i, "name",
+                    LocalDate.of(1990, 10, 10))).getId());
+        }
+        userService.addToFriends(ids.get(0), ids.get(1));
+        userService.addToFriends(ids.get(0), ids.get(2));
+        userService.addToFriends(ids.get(1), ids.get(4));
+        userService.addToFriends(ids.get(1), ids.get(3));
+        userService.addToFriends(ids.get(2), ids.get(3));
+
+        List<Long> recommended = new ArrayList<>();
+        userService.getRecommendations(ids.get(0), 10).forEach(u -> recommended.add(u.getId()));
+        assertEquals(List.of(ids.get(3), ids.get(4)), recommended);
+        assertEquals(1, userService.getRecommendations(ids.get(0), 1).size());
+        assertThrows(StorageException.class, () -> userService.getRecommendations(-1, 10));
+    }
+
+    // Из параллельных добавлений и удалений одной пары успешна ровно одна операция каждого вида подряд,
+    // и дружба остается взаимной
+    @Test
+    void concurrentFriendshipIsLinearizable() throws Exception {
+        int users = 6;
+        for (int i = 0; i < users; i++) {
+            userService.createUser(new User(i + "@mail.ru", "login" + i, "name", LocalDate.of(1990, 10, 10)));
+        }
+        AtomicIntegerArray added = new AtomicIntegerArray(users * users);
+        AtomicIntegerArray removed = new AtomicIntegerArray(users * users);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 500; j++) {
+                    int userId = random.nextInt(1, users + 1);
+                    int friendId = random.nextInt(1, users + 1);
+                    if (userId == friendId) {
+                        continue;
+                    }
+
+                    int pair = Math.min(userId, friendId) * users + Math.max(userId, friendId) - users - 1;
+                    try {
+                        if (random.nextBoolean()) {
+                            userService.addToFriends(userId, friendId);
+                            added.incrementAndGet(pair);
+                        } else {
+                            userService.removeFromFriends(userId, friendId);
+                            removed.incrementAndGet(pair);
+                        }
+                    } catch (StorageException ignored) {
+                        // Пара уже в нужном состоянии
+                    }
+                    userService.getUserFriends(userId);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        for (long userId = 1; userId <= users; userId++) {
+            for (long friendId = userId + 1; friendId <= users; friendId++) {
+                boolean friends = userService.getUser(userId).getFriendsId().contains(friendId);
+                assertEquals(friends, userService.getUser(friendId).getFriendsId().contains(userId));
+
+                int pair = (int) (userId * users + friendId - users - 1);
+                assertEquals(friends ? 1 : 0, added.get(pair) - removed.get(pair));
+            }
+        }
+    }
+}
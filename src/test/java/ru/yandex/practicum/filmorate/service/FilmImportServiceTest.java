@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "filmorate.import.chunk-size=2")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class FilmImportServiceTest {
+    private static final String FILM = "{\"name\":\" film\",\"description\":\"desc\",\"releaseDate\":\"2000-12-12\"," +
+            "\"duration\":100,\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":2}]}";
+
+    private final FilmImportService importService;
+    private final FilmDbStorage filmDbStorage;
+
+    @Test
+    void importCorrectFilms() throws IOException {
+        ImportReport report = importService.importFilms(ndjson(FILM, FILM, "", FILM));
+
+        assertEquals(3, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertTrue(report.getErrors().isEmpty());
+
+        List<Film> films = filmDbStorage.getFilms();
+        assertEquals(3, films.size());
+        assertEquals("film", films.get(0).getName());
+        assertEquals(2, films.get(2).getGenres().size());
+    }
+
+    @Test
+    void importReportsErrorsByLine() throws IOException {
+        ImportReport report = importService.importFilms(ndjson(
+                FILM,
+                "{not json",
+                FILM.replace("2000-12-12", "1800-12-12"),
+                FILM.replace("\"name\":\" film\"", "\"name\":\"\""),
+                FILM.replace("{\"id\":1},{\"id\":2}", "{\"id\":100}"),
+                FILM));
+
+        assertEquals(2, report.getImported());
+        assertEquals(4, report.getFailed());
+        assertEquals(List.of(2L, 3L, 4L, 5L), report.getErrors().stream()
+                .map(ImportReport.LineError::getLine)
+                .collect(Collectors.toList()));
+        assertEquals("Время выпуска фильма меньше минимальной даты: 28-12-1895",
+                report.getErrors().get(1).getMessage());
+        assertEquals(2, filmDbStorage.getFilms().size());
+    }
+
+    private ByteArrayInputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
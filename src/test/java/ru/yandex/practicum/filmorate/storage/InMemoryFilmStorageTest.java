@@ -3,15 +3,32 @@ package ru.yandex.practicum.filmorate.storage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmCatalog;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class InMemoryFilmStorageTest {
+    // Потоков, параллельно заменяющих версии в тестах гонок с обновлением
+    private static final int UPDATERS = 4;
+
     private InMemoryFilmStorage filmStorage;
     private Film film;
 
@@ -28,6 +45,44 @@ class InMemoryFilmStorageTest {
         assertEquals(film, filmStorage.getFilm(film.getId()).orElse(null));
     }
 
+    @Test
+    void searchFollowsFilmChanges() {
+        Film other = new Film("Другой фильм", "desc", LocalDate.of(2020, 12, 12), 100);
+        filmStorage.saveFilm(film);
+        filmStorage.saveFilm(other);
+        assertEquals(List.of(film, other), filmStorage.searchFilms("фильм film", 10));
+
+        Film updated = new Film("Комедия", "desc", LocalDate.of(2020, 12, 12), 100);
+        updated.setId(film.getId());
+        filmStorage.updateFilm(updated);
+        assertEquals(List.of(updated), filmStorage.searchFilms("комедия", 10));
+
+        filmStorage.deleteFilm(updated.getId());
+        assertTrue(filmStorage.searchFilms("комедия", 10).isEmpty());
+    }
+
+    @Test
+    void filterFollowsFilmChanges() {
+        Film other = new Film("other", "desc", LocalDate.of(2010, 12, 12), 100);
+        filmStorage.saveFilm(film);
+        filmStorage.saveFilm(other);
+        other.addLike(1);
+
+        FilmFilter filter = new FilmFilter();
+        filter.setYearFrom(2000);
+        filter.setPopular(true);
+        assertEquals(List.of(other, film), filmStorage.filterFilms(filter, 10).getItems());
+        assertEquals(Map.of(2010, 1, 2020, 1), filmStorage.filterFilms(filter, 10).getFacets().getYears());
+
+        Film updated = new Film("film", "desc", LocalDate.of(1999, 12, 12), 100);
+        updated.setId(film.getId());
+        filmStorage.updateFilm(updated);
+        assertEquals(1, filmStorage.filterFilms(filter, 10).getTotal());
+
+        filmStorage.deleteFilm(other.getId());
+        assertTrue(filmStorage.filterFilms(filter, 10).getItems().isEmpty());
+    }
+
     @Test
     void saveExistFilm() {
         assertTrue(filmStorage.saveFilm(film).isPresent());
@@ -138,4 +193,170 @@ class InMemoryFilmStorageTest {
         List<Film> topFilms2 = List.of(film3, film, film1, film2, film4);
         assertEquals(topFilms2, filmStorage.getTopFilms(10));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateKeepsLikes() {
+        filmStorage.saveFilm(film);
+        film.addLike(1);
+        film.addLike(2);
+
+        Film updated = new Film("new film", "new desc", LocalDate.of(2020, 12, 12), 120);
+        updated.setId(film.getId());
+        assertTrue(filmStorage.updateFilm(updated).isPresent());
+        assertEquals(2, filmStorage.getFilm(film.getId()).orElseThrow().getLikesNumber());
+        assertEquals(film.getLikesByUsers(), updated.getLikesByUsers());
+    }
+
+    @Test
+    void concurrentSaveAssignsUniqueIds() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    filmStorage.saveFilm(new Film("film", "desc", LocalDate.of(2020, 12, 12), 100));
+                    filmStorage.getFilmsPage(j, 10);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<Film> films = filmStorage.getFilms();
+        assertEquals(8000, films.size());
+        for (int i = 0; i < films.size(); i++) {
+            assertEquals(i + 1, films.get(i).getId());
+        }
+    }
+
+    // Каждый успешный лайк и его удаление учитываются ровно один раз: по каждому пользователю разница успешных
+    // операций совпадает с итоговым состоянием, а счетчик - с размером множества
+    @Test
+    void concurrentLikesAreLinearizable() throws Exception {
+        filmStorage.saveFilm(film);
+        int users = 50;
+        AtomicIntegerArray added = new AtomicIntegerArray(users);
+        AtomicIntegerArray removed = new AtomicIntegerArray(users);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 20_000; j++) {
+                    int userId = random.nextInt(users);
+                    if (random.nextBoolean()) {
+                        if (film.addLike(userId)) {
+                            added.incrementAndGet(userId);
+                        }
+                    } else if (film.deleteLike(userId)) {
+                        removed.incrementAndGet(userId);
+                    }
+                    filmStorage.getTopFilms(1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        for (int userId = 0; userId < users; userId++) {
+            int expected = film.getLikesByUsers().contains((long) userId) ? 1 : 0;
+            assertEquals(expected, added.get(userId) - removed.get(userId));
+        }
+        assertEquals(film.getLikesByUsers().size(), film.getLikesNumber());
+    }
+
+    // Лайк версии фильма, которую параллельно заменило обновление, не теряется: все успешные лайки
+    // есть в итоговой версии, а счетчик совпадает с их числом
+    @Test
+    void concurrentUpdateKeepsLikes() throws Exception {
+        filmStorage.saveFilm(film);
+        int threads = 8;
+        int likesPerThread = 1_000;
+        AtomicInteger added = new AtomicInteger();
+        AtomicBoolean liking = new AtomicBoolean(true);
+        CountDownLatch updating = new CountDownLatch(UPDATERS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + UPDATERS);
+        List<Future<?>> updates = new ArrayList<>();
+        for (int i = 0; i < UPDATERS; i++) {
+            updates.add(executor.submit(() -> {
+                updating.countDown();
+                while (liking.get()) {
+                    Film updated = new Film("film", "desc", LocalDate.of(2020, 12, 12), 100);
+                    updated.setId(film.getId());
+                    filmStorage.updateFilm(updated);
+                }
+            }));
+        }
+        updating.await();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int first = i * likesPerThread;
+            futures.add(executor.submit(() -> {
+                for (int userId = first; userId < first + likesPerThread; userId++) {
+                    Film current = filmStorage.getFilm(film.getId()).orElseThrow();
+                    Thread.yield();
+                    if (current.addLike(userId)) {
+                        added.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        liking.set(false);
+        for (Future<?> future : updates) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        Film current = filmStorage.getFilm(film.getId()).orElseThrow();
+        assertEquals(threads * likesPerThread, added.get());
+        assertEquals(threads * likesPerThread, current.getLikesByUsers().size());
+        assertEquals(threads * likesPerThread, current.getLikesNumber());
+    }
+
+    // Индекс каталога меняется в том же порядке, что и фильмы: удаленный фильм не возвращается в индекс
+    // запоздавшим обновлением, а из параллельных обновлений в индексе остается последнее сохраненное
+    @Test
+    void concurrentUpdateAndDeleteKeepFilterInSync() throws Exception {
+        int count = 2_000;
+        for (int i = 0; i < count; i++) {
+            filmStorage.saveFilm(new Film("film", "desc", LocalDate.of(2000, 1, 1), 100));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int year = 2001; year <= 2002; year++) {
+            LocalDate releaseDate = LocalDate.of(year, 1, 1);
+            futures.add(executor.submit(() -> {
+                for (long id = 1; id <= count; id++) {
+                    Film updated = new Film("film", "desc", releaseDate, 100);
+                    updated.setId(id);
+                    filmStorage.updateFilm(updated);
+                }
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            for (long id = 1; id <= count; id += 2) {
+                filmStorage.deleteFilm(id);
+            }
+        }));
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        Map<Integer, Integer> years = new TreeMap<>();
+        filmStorage.getFilms().forEach(film -> years.merge(film.getReleaseDate().getYear(), 1, Integer::sum));
+        FilmCatalog catalog = filmStorage.filterFilms(new FilmFilter(), 10);
+        assertEquals(count / 2, catalog.getTotal());
+        assertEquals(years, catalog.getFacets().getYears());
+    }
+}
@@ -5,12 +5,24 @@ import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class InMemoryUserStorageTest {
+    // Потоков, параллельно заменяющих версии в тестах гонок с обновлением
+    private static final int UPDATERS = 4;
+
     private UserStorage storage;
     private User user;
 
@@ -88,4 +100,74 @@ class InMemoryUserStorageTest {
         storage.createUser(user);
         assertTrue(storage.userExist(user.getId()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateKeepsFriends() {
+        storage.createUser(user);
+        user.addFriend(2, true);
+
+        User updated = new User("b@mail.ru", "new", "name", LocalDate.of(1990, 10, 10));
+        updated.setId(user.getId());
+        assertTrue(storage.updateUser(updated));
+        assertEquals(List.of(2L), storage.getUser(user.getId()).orElseThrow().getFriendsId());
+    }
+
+    @Test
+    void idsStartFromOneForEachStorage() {
+        storage.createUser(user);
+        assertEquals(1, user.getId());
+
+        User other = new User("b@mail.ru", "other", "name", LocalDate.of(1990, 10, 10));
+        new InMemoryUserStorage().createUser(other);
+        assertEquals(1, other.getId());
+    }
+
+    // Друг, добавленный версии пользователя, которую параллельно заменило обновление, не теряется
+    @Test
+    void concurrentUpdateKeepsFriends() throws Exception {
+        storage.createUser(user);
+        int threads = 8;
+        int friendsPerThread = 500;
+        AtomicInteger added = new AtomicInteger();
+        AtomicBoolean adding = new AtomicBoolean(true);
+        CountDownLatch updating = new CountDownLatch(UPDATERS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + UPDATERS);
+        List<Future<?>> updates = new ArrayList<>();
+        for (int i = 0; i < UPDATERS; i++) {
+            updates.add(executor.submit(() -> {
+                updating.countDown();
+                while (adding.get()) {
+                    User updated = new User("b@mail.ru", "new", "name", LocalDate.of(1990, 10, 10));
+                    updated.setId(user.getId());
+                    storage.updateUser(updated);
+                }
+            }));
+        }
+        updating.await();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int first = i * friendsPerThread + 100;
+            futures.add(executor.submit(() -> {
+                for (long friendId = first; friendId < first + friendsPerThread; friendId++) {
+                    User current = storage.getUser(user.getId()).orElseThrow();
+                    Thread.yield();
+                    if (current.addFriend(friendId, true)) {
+                        added.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        adding.set(false);
+        for (Future<?> future : updates) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        assertEquals(threads * friendsPerThread, added.get());
+        assertEquals(threads * friendsPerThread, storage.getUser(user.getId()).orElseThrow().getFriendsId().size());
+    }
+}
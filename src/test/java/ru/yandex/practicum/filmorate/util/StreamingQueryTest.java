@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class StreamingQueryTest {
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:streaming", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() {
+        dataSource.destroy();
+    }
+
+    // Ленивое выполнение включено только на время потокового запроса, соединение возвращается в обычном режиме
+    @Test
+    void lazyExecutionIsScopedToQuery() {
+        List<Integer> values = new ArrayList<>();
+        List<Boolean> lazy = new ArrayList<>();
+
+        StreamingQuery.query(jdbcTemplate, "SELECT X FROM SYSTEM_RANGE(1, 3)", 2, (ResultSet rs) -> {
+            values.add(rs.getInt(1));
+            lazy.add(isLazy());
+        });
+
+        assertEquals(List.of(1, 2, 3), values);
+        assertEquals(List.of(true, true, true), lazy);
+        assertFalse(isLazy());
+    }
+
+    // Настройка сессии H2 не видна через INFORMATION_SCHEMA, поэтому читается у самой сессии
+    private boolean isLazy() {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) con ->
+                ((SessionLocal) con.unwrap(JdbcConnection.class).getSession()).isLazyQueryExecution());
+    }
+}